@@ -0,0 +1,151 @@
+package com.pratham.banking.benchmark;
+
+import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.dto.BatchTransferRequest;
+import com.pratham.banking.dto.BatchTransferResponse;
+import com.pratham.banking.dto.DepositRequest;
+import com.pratham.banking.dto.TransactionPageResponse;
+import com.pratham.banking.dto.TransactionResponse;
+import com.pratham.banking.dto.TransferRequest;
+import com.pratham.banking.dto.WithdrawRequest;
+import com.pratham.banking.entity.Money;
+import com.pratham.banking.service.AccountService;
+import com.pratham.banking.service.TransactionHistoryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * JMH suite for the {@link AccountService} money path.
+ *
+ * <p>Workloads:
+ * <ul>
+ *     <li><b>uncontended</b> - every thread owns a private account pair</li>
+ *     <li><b>hotAccount</b> - every thread credits the same destination account</li>
+ *     <li><b>randomPair</b> - source and destination are drawn uniformly from the pool</li>
+ * </ul>
+ * Thread counts and modes are supplied by {@link BenchmarkRunner}.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class AccountServiceBenchmark {
+
+    private static final Long AMOUNT = Money.parse("1.00");
+    private static final int BATCH_SIZE = 100;
+
+    @State(Scope.Thread)
+    public static class ThreadAccounts {
+
+        AccountService accountService;
+        Long firstAccountId;
+        Long secondAccountId;
+        Long hotAccountId;
+        BankingBenchmarkContext context;
+        boolean forward;
+
+        @Setup(Level.Trial)
+        public void setUp(BankingBenchmarkContext context) {
+            this.context = context;
+            this.accountService = context.getAccountService();
+            int pairIndex = context.claimPrivatePairIndex();
+            this.firstAccountId = context.getAccountId(pairIndex);
+            this.secondAccountId = context.getAccountId(pairIndex + 1);
+            this.hotAccountId = context.getHotAccountId();
+        }
+    }
+
+    @Benchmark
+    public AccountResponse depositUncontended(ThreadAccounts accounts) {
+        return accounts.accountService.deposit(accounts.firstAccountId, DepositRequest.builder()
+                .amount(AMOUNT)
+                .build());
+    }
+
+    @Benchmark
+    public AccountResponse depositHotAccount(ThreadAccounts accounts) {
+        return accounts.accountService.deposit(accounts.hotAccountId, DepositRequest.builder()
+                .amount(AMOUNT)
+                .build());
+    }
+
+    @Benchmark
+    public AccountResponse withdrawUncontended(ThreadAccounts accounts) {
+        return accounts.accountService.withdraw(accounts.firstAccountId, WithdrawRequest.builder()
+                .amount(AMOUNT)
+                .build());
+    }
+
+    @Benchmark
+    public AccountResponse transferUncontended(ThreadAccounts accounts) {
+        accounts.forward = !accounts.forward;
+        Long from = accounts.forward ? accounts.firstAccountId : accounts.secondAccountId;
+        Long to = accounts.forward ? accounts.secondAccountId : accounts.firstAccountId;
+        return accounts.accountService.transfer(transferRequest(from, to));
+    }
+
+    @Benchmark
+    public AccountResponse transferHotAccount(ThreadAccounts accounts) {
+        return accounts.accountService.transfer(transferRequest(accounts.firstAccountId, accounts.hotAccountId));
+    }
+
+    @Benchmark
+    public AccountResponse transferRandomPair(ThreadAccounts accounts) {
+        BankingBenchmarkContext context = accounts.context;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int fromIndex = random.nextInt(context.getAccountCount());
+        int toIndex = (fromIndex + 1 + random.nextInt(context.getAccountCount() - 1)) % context.getAccountCount();
+        return accounts.accountService.transfer(
+                transferRequest(context.getAccountId(fromIndex), context.getAccountId(toIndex))
+        );
+    }
+
+    /**
+     * One batch of {@value #BATCH_SIZE} payouts from the thread's own account to random accounts.
+     */
+    @Benchmark
+    public BatchTransferResponse transferBatch(ThreadAccounts accounts) {
+        BankingBenchmarkContext context = accounts.context;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<TransferRequest> transfers = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Long toAccountId = context.getAccountId(random.nextInt(context.getAccountCount()));
+            if (!toAccountId.equals(accounts.firstAccountId)) {
+                transfers.add(transferRequest(accounts.firstAccountId, toAccountId));
+            }
+        }
+        String idempotencyKey = UUID.randomUUID().toString();
+        return accounts.accountService.transferBatch("bench-user", idempotencyKey, idempotencyKey, BatchTransferRequest.builder()
+                .transfers(transfers)
+                .build());
+    }
+
+    @Benchmark
+    public List<TransactionResponse> transactionHistory(ThreadAccounts accounts) {
+        return accounts.accountService.getTransactionsByAccountId(accounts.firstAccountId);
+    }
+
+    @Benchmark
+    public TransactionPageResponse transactionHistoryFirstPage(ThreadAccounts accounts) {
+        return accounts.context.getTransactionHistoryService()
+                .getTransactionPage(accounts.firstAccountId, null, TransactionHistoryService.DEFAULT_PAGE_SIZE);
+    }
+
+    private static TransferRequest transferRequest(Long fromAccountId, Long toAccountId) {
+        return TransferRequest.builder()
+                .fromAccountId(fromAccountId)
+                .toAccountId(toAccountId)
+                .amount(AMOUNT)
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package com.pratham.banking.benchmark;
+
+import com.pratham.banking.BankingApplication;
+import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.Money;
+import com.pratham.banking.entity.Role;
+import com.pratham.banking.entity.User;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.UserRepository;
+import com.pratham.banking.service.AccountService;
+import com.pratham.banking.service.BalanceShardService;
+import com.pratham.banking.service.TransactionHistoryService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared JMH state that boots the application against an embedded H2 database
+ * and seeds a pool of funded accounts for the money-path benchmarks.
+ */
+@State(Scope.Benchmark)
+public class BankingBenchmarkContext {
+
+    static final int ACCOUNT_POOL_SIZE = 256;
+    static final long INITIAL_BALANCE = Money.parse("1000000000.00");
+
+    @Param({"LOCKING", "CONDITIONAL_UPDATE", "IN_MEMORY"})
+    public String transferEngine;
+
+    /**
+     * Balance shards for the hot account; {@code 0} leaves it unsharded.
+     */
+    @Param({"0"})
+    public int hotAccountShards;
+
+    private ConfigurableApplicationContext applicationContext;
+    private AccountService accountService;
+    private TransactionHistoryService transactionHistoryService;
+    private final List<Long> accountIds = new ArrayList<>();
+    private final AtomicInteger nextPrivatePair = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path journalDirectory = Files.createTempDirectory("banking-bench-journal");
+        applicationContext = new SpringApplicationBuilder(BankingApplication.class)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:banking_bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;NON_KEYWORDS=KEY,VALUE",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.hikari.maximum-pool-size=32",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--server.port=0",
+                        "--app.seed.admin.enabled=false",
+                        "--app.transfer.engine=" + transferEngine,
+                        "--app.transfer.in-memory.journal-dir=" + journalDirectory,
+                        "--app.account.sharding.enabled=" + (hotAccountShards > 1),
+                        "--logging.level.root=WARN"
+                );
+
+        accountService = applicationContext.getBean(AccountService.class);
+        transactionHistoryService = applicationContext.getBean(TransactionHistoryService.class);
+        seedAccounts(
+                applicationContext.getBean(UserRepository.class),
+                applicationContext.getBean(AccountRepository.class)
+        );
+        if (hotAccountShards > 1) {
+            applicationContext.getBean(BalanceShardService.class).enableSharding(getHotAccountId(), hotAccountShards);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (applicationContext != null) {
+            applicationContext.close();
+        }
+    }
+
+    public AccountService getAccountService() {
+        return accountService;
+    }
+
+    public TransactionHistoryService getTransactionHistoryService() {
+        return transactionHistoryService;
+    }
+
+    /**
+     * Returns the account that every thread targets in the hot-account workload.
+     *
+     * @return the hot account id
+     */
+    public Long getHotAccountId() {
+        return accountIds.get(0);
+    }
+
+    public Long getAccountId(int index) {
+        return accountIds.get(index % accountIds.size());
+    }
+
+    public int getAccountCount() {
+        return accountIds.size();
+    }
+
+    /**
+     * Hands out a distinct account pair to each benchmark thread so the
+     * uncontended workload never shares a row lock between threads.
+     *
+     * @return index of the first account of the pair; the second is {@code index + 1}. Both stay within
+     *         {@code 1..size-2}, clear of the hot account at index 0.
+     */
+    public int claimPrivatePairIndex() {
+        int pair = nextPrivatePair.getAndIncrement();
+        return 1 + (pair * 2) % (accountIds.size() - 2);
+    }
+
+    private void seedAccounts(UserRepository userRepository, AccountRepository accountRepository) {
+        User user = userRepository.save(User.builder()
+                .username("bench-user")
+                .password("not-used")
+                .role(Role.USER)
+                .build());
+
+        for (int i = 0; i < ACCOUNT_POOL_SIZE; i++) {
+            Account account = accountRepository.save(Account.builder()
+                    .user(user)
+                    .balance(INITIAL_BALANCE)
+                    .build());
+            accountIds.add(account.getId());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.pratham.banking.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the benchmark suites once per configured thread count, reporting both
+ * throughput and sampled latency (p50/p90/p99) for every workload.
+ *
+ * <p>Usage: {@code ./mvnw -Pbenchmark test-compile exec:exec -Djmh.threads=1,4,16 -Djmh.include=transfer.*}
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("jmh.include", ".*Benchmark.*");
+        int[] threadCounts = Arrays.stream(System.getProperty("jmh.threads", "1,4,16").split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .toArray();
+
+        for (int threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .mode(Mode.Throughput)
+                    .mode(Mode.SampleTime)
+                    .timeUnit(TimeUnit.MICROSECONDS)
+                    .warmupTime(TimeValue.seconds(5))
+                    .measurementTime(TimeValue.seconds(5))
+                    .result("target/jmh-result-" + threads + "t.json")
+                    .resultFormat(ResultFormatType.JSON);
+
+            new Runner(options.build()).run();
+        }
+    }
+}
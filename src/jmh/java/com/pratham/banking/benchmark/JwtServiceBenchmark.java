@@ -0,0 +1,36 @@
+package com.pratham.banking.benchmark;
+
+import com.pratham.banking.security.JwtService;
+import com.pratham.banking.security.JwtTokenClaims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the per-request token verification done by the JWT filter.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtService = new JwtService("veryStrongSecretKeyForDevelopment123456789");
+        token = jwtService.generateToken("bench-user", "USER");
+    }
+
+    @Benchmark
+    public JwtTokenClaims parseToken() {
+        return jwtService.parseToken(token);
+    }
+}
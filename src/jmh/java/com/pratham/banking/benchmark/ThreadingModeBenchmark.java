@@ -0,0 +1,128 @@
+package com.pratham.banking.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratham.banking.BankingApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * End-to-end HTTP suite comparing the platform-thread and virtual-thread request models under a
+ * lock-heavy load: most threads deposit into one hot account while the rest read it.
+ *
+ * <p>{@code VIRTUAL} also turns the concurrency limits on explicitly. Virtual threads need a Java 21
+ * runtime; on older runtimes Boot ignores the flag, so {@code VIRTUAL} then measures the limits alone
+ * on platform threads.
+ */
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@State(Scope.Benchmark)
+public class ThreadingModeBenchmark {
+
+    private static final String PASSWORD = "bench-password";
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String threadingMode;
+
+    private ConfigurableApplicationContext applicationContext;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpClient httpClient;
+    private String baseUrl;
+    private String token;
+    private long hotAccountId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        boolean virtualThreads = "VIRTUAL".equals(threadingMode);
+        applicationContext = new SpringApplicationBuilder(BankingApplication.class)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:banking_http_bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;NON_KEYWORDS=KEY,VALUE",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--server.port=0",
+                        "--server.tomcat.threads.max=32",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--app.concurrency.limit.enabled=" + virtualThreads,
+                        "--app.seed.admin.enabled=false",
+                        "--logging.level.root=WARN"
+                );
+
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://localhost:" + applicationContext.getEnvironment().getProperty("local.server.port");
+
+        String credentials = "{\"username\":\"bench-http\",\"password\":\"" + PASSWORD + "\"}";
+        long userId = post("/api/auth/register", credentials).path("data").path("id").asLong();
+        token = post("/api/auth/login", credentials).path("data").asText();
+        hotAccountId = post("/api/accounts", "{\"userId\":" + userId + "}").path("data").path("id").asLong();
+        post("/api/accounts/" + hotAccountId + "/deposit", "{\"amount\":1000000000}");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (applicationContext != null) {
+            applicationContext.close();
+        }
+    }
+
+    @Benchmark
+    @Group("hotAccount")
+    @GroupThreads(3)
+    public int hotAccountDeposit() throws IOException, InterruptedException {
+        return send(request("/api/accounts/" + hotAccountId + "/deposit")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":1}"))
+                .build()).statusCode();
+    }
+
+    @Benchmark
+    @Group("hotAccount")
+    @GroupThreads(1)
+    public int hotAccountRead() throws IOException, InterruptedException {
+        return send(request("/api/accounts/" + hotAccountId).GET().build()).statusCode();
+    }
+
+    private JsonNode post(String path, String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(request(path)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("Seeding request " + path + " failed: " + response.body());
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json");
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
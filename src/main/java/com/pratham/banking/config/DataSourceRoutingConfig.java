@@ -0,0 +1,70 @@
+package com.pratham.banking.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Splits the connection pool into a primary and a read replica when
+ * {@code app.datasource.replica.enabled=true}.
+ *
+ * <p>The primary pool is built from the usual {@code spring.datasource} properties, the replica pool
+ * from {@code app.datasource.replica}. Read-only transactions, such as history pages and ownership
+ * checks, then take replica connections instead of competing with the locked write path for primary
+ * ones. See {@link ReplicaRoutingDataSource} for the routing rules.
+ *
+ * <p>Replicas are not combined with database shards; with both enabled {@link DatabaseShardConfig}
+ * refuses to start.
+ */
+@Configuration
+@ConditionalOnExpression("${app.datasource.replica.enabled:false} and !${app.datasource.shards.enabled:false}")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${app.datasource.replica.url}") String url,
+                                              @Value("${app.datasource.replica.username}") String username,
+                                              @Value("${app.datasource.replica.password}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 @Value("${app.datasource.replica.read-your-writes-ms:5000}") long readYourWritesMs) {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(
+                primaryDataSource,
+                replicaDataSource,
+                new ReadYourWritesTracker(readYourWritesMs)
+        );
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,171 @@
+package com.pratham.banking.config;
+
+import com.pratham.banking.entity.Transaction;
+import com.pratham.banking.service.DatabaseShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spreads accounts over several databases when {@code app.datasource.shards.enabled=true}.
+ *
+ * <p>The home shard's pool is built from the usual {@code spring.datasource} properties and every
+ * other shard gets a pool with the same settings for its entry of {@code app.datasource.shards.urls}.
+ * Hibernate only manages the schema of the home shard, so at startup the same schema action is run
+ * against the other shards, and each shard's account and transaction ids are moved to the start of its
+ * id range. See {@link DatabaseShardRouter} for how accounts are placed. Read replicas are not
+ * supported together with shards.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.shards.enabled", havingValue = "true")
+public class DatabaseShardConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseShardConfig.class);
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource homeShardDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("shard-0");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("homeShardDataSource") HikariDataSource homeShardDataSource,
+                                 @Value("${app.datasource.shards.urls:}") List<String> shardUrls,
+                                 @Value("${app.datasource.shards.username}") String username,
+                                 @Value("${app.datasource.shards.password}") String password,
+                                 @Value("${app.datasource.replica.enabled:false}") boolean replicaEnabled) {
+        if (replicaEnabled) {
+            throw new IllegalStateException("Database shards do not support a read replica");
+        }
+
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(homeShardDataSource);
+        for (String url : shardUrls) {
+            HikariDataSource shard = new HikariDataSource();
+            homeShardDataSource.copyStateTo(shard);
+            shard.setJdbcUrl(url.trim());
+            shard.setUsername(username);
+            shard.setPassword(password);
+            shard.setPoolName("shard-" + shards.size());
+            shards.add(shard);
+        }
+        return new LazyConnectionDataSourceProxy(new DatabaseShardRoutingDataSource(shards));
+    }
+
+    @Bean
+    public ShardSchemaIntegrator shardSchemaIntegrator() {
+        return new ShardSchemaIntegrator();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaIntegratorCustomizer(ShardSchemaIntegrator shardSchemaIntegrator) {
+        return properties -> properties.put(
+                "hibernate.integrator_provider",
+                (IntegratorProvider) () -> List.of(shardSchemaIntegrator)
+        );
+    }
+
+    /**
+     * Prepares the shards other than the home shard once the entity manager factory is up.
+     */
+    @Bean
+    public SmartInitializingSingleton prepareDatabaseShards(EntityManagerFactory entityManagerFactory,
+                                                            ShardSchemaIntegrator shardSchemaIntegrator,
+                                                            DatabaseShardRouter databaseShardRouter,
+                                                            JdbcTemplate jdbcTemplate) {
+        return () -> {
+            SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+            Map<String, Object> settings = new HashMap<>(sessionFactory.getProperties());
+            Object schemaAction = settings.get(AvailableSettings.HBM2DDL_AUTO);
+
+            for (int shard = 1; shard < databaseShardRouter.shardCount(); shard++) {
+                int current = shard;
+                databaseShardRouter.onShard(current, () -> {
+                    if (schemaAction != null && !"none".equals(schemaAction.toString())) {
+                        SchemaManagementToolCoordinator.process(
+                                shardSchemaIntegrator.metadata,
+                                sessionFactory.getServiceRegistry(),
+                                settings,
+                                action -> { }
+                        );
+                    }
+                    alignIds(jdbcTemplate, databaseShardRouter.firstId(current), current);
+                    return null;
+                });
+            }
+        };
+    }
+
+    /**
+     * Restarts the account id column and the transaction id sequence of a shard at the start of its
+     * range, unless the shard already issues ids from it.
+     */
+    private static void alignIds(JdbcTemplate jdbcTemplate, long firstId, int shard) {
+        Long maxAccountId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM accounts", Long.class);
+        if (maxAccountId == null || maxAccountId < firstId) {
+            jdbcTemplate.execute("ALTER TABLE accounts ALTER COLUMN id RESTART WITH " + firstId);
+            logger.info("Account ids of shard {} start at {}", shard, firstId);
+        }
+
+        Long nextTransactionId = jdbcTemplate.queryForObject(
+                "SELECT nextval('" + Transaction.ID_SEQUENCE + "')",
+                Long.class
+        );
+        if (nextTransactionId == null || nextTransactionId < firstId) {
+            // The pooled optimizer hands out the ALLOCATION_SIZE ids up to each sequence value.
+            long restartValue = firstId + Transaction.ID_ALLOCATION_SIZE;
+            jdbcTemplate.execute("ALTER SEQUENCE " + Transaction.ID_SEQUENCE + " RESTART WITH " + restartValue);
+            logger.info("Transaction ids of shard {} start at {}", shard, firstId);
+        }
+    }
+
+    /**
+     * Keeps the mapping metadata Hibernate built for the home shard, so the same schema can be applied
+     * to the other shards.
+     */
+    static class ShardSchemaIntegrator implements Integrator {
+
+        private volatile Metadata metadata;
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
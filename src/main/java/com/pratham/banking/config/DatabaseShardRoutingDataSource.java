@@ -0,0 +1,32 @@
+package com.pratham.banking.config;
+
+import com.pratham.banking.service.DatabaseShardRouter;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out connections of the database shard bound by {@link DatabaseShardRouter}, or of the home
+ * shard when none is bound.
+ */
+public class DatabaseShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public DatabaseShardRoutingDataSource(List<DataSource> shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(DatabaseShardRouter.HOME_SHARD));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return DatabaseShardRouter.currentShard();
+    }
+}
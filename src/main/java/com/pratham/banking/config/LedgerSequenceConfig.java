@@ -0,0 +1,39 @@
+package com.pratham.banking.config;
+
+import com.pratham.banking.entity.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+public class LedgerSequenceConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerSequenceConfig.class);
+
+    /**
+     * Moves the transaction id sequence past ids issued by the former IDENTITY column.
+     * In steady state every id comes from the sequence, so the sequence is always ahead
+     * of {@code MAX(id)} and this runner changes nothing.
+     */
+    @Bean
+    public CommandLineRunner alignTransactionSequence(JdbcTemplate jdbcTemplate) {
+        return args -> {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM transactions", Long.class);
+            Long nextValue = jdbcTemplate.queryForObject(
+                    "SELECT nextval('" + Transaction.ID_SEQUENCE + "')",
+                    Long.class
+            );
+
+            if (maxId == null || maxId == 0 || nextValue == null || nextValue > maxId + Transaction.ID_ALLOCATION_SIZE) {
+                return;
+            }
+
+            long restartValue = maxId + Transaction.ID_ALLOCATION_SIZE + 1;
+            jdbcTemplate.execute("ALTER SEQUENCE " + Transaction.ID_SEQUENCE + " RESTART WITH " + restartValue);
+            logger.info("Aligned {} to start at {}", Transaction.ID_SEQUENCE, restartValue);
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.pratham.banking.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which users wrote recently, so their reads stay on the primary until the replica has had
+ * time to replay the write.
+ *
+ * <p>Entries only matter for the read-your-writes window; once the map grows past
+ * {@value #PURGE_THRESHOLD} users, entries older than the window are dropped. The map therefore holds
+ * about as many users as write within one window.
+ *
+ * <p>The tracker lives in the memory of one instance. With several instances behind a load balancer, a
+ * read served by an instance other than the one that took the write can still go to a lagging replica,
+ * so read-your-writes only holds when a user's requests stick to one instance (for example through
+ * session affinity on the user's token), or with a single instance.
+ */
+public class ReadYourWritesTracker {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final long windowMs;
+
+    public ReadYourWritesTracker(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public void recordWrite(String username) {
+        long now = System.currentTimeMillis();
+        lastWrites.put(username, now);
+        if (lastWrites.size() > PURGE_THRESHOLD) {
+            lastWrites.values().removeIf(writtenAt -> now - writtenAt >= windowMs);
+        }
+    }
+
+    /**
+     * Whether the user wrote within the read-your-writes window.
+     */
+    public boolean hasRecentWrite(String username) {
+        Long writtenAt = lastWrites.get(username);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - writtenAt < windowMs) {
+            return true;
+        }
+        lastWrites.remove(username, writtenAt);
+        return false;
+    }
+}
@@ -2,27 +2,43 @@ package com.pratham.banking.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratham.banking.dto.AccountLockModeRequest;
 import com.pratham.banking.dto.ApiResponse;
 import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.dto.BatchTransferRequest;
+import com.pratham.banking.dto.BatchTransferResponse;
 import com.pratham.banking.dto.CreateAccountRequest;
 import com.pratham.banking.dto.DepositRequest;
+import com.pratham.banking.dto.TransactionPageResponse;
+import com.pratham.banking.dto.EnableShardingRequest;
 import com.pratham.banking.dto.TransactionResponse;
 import com.pratham.banking.dto.TransferRequest;
+import com.pratham.banking.dto.TransferSubmissionResponse;
 import com.pratham.banking.dto.WithdrawRequest;
+import com.pratham.banking.filter.IdempotencyFilter;
 import com.pratham.banking.service.AccountService;
+import com.pratham.banking.service.AsyncTransferService;
+import com.pratham.banking.service.IdempotencyService;
+import com.pratham.banking.service.TransactionHistoryService;
+import com.pratham.banking.service.TransferPipeline;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
@@ -39,10 +55,23 @@ import java.util.List;
 public class AccountController {
 
     private final AccountService accountService;
+    private final TransactionHistoryService transactionHistoryService;
+    private final TransferPipeline transferPipeline;
+    private final AsyncTransferService asyncTransferService;
+    private final IdempotencyService idempotencyService;
     private final ObjectMapper objectMapper;
 
-    public AccountController(AccountService accountService, ObjectMapper objectMapper) {
+    public AccountController(AccountService accountService,
+                             TransactionHistoryService transactionHistoryService,
+                             TransferPipeline transferPipeline,
+                             AsyncTransferService asyncTransferService,
+                             IdempotencyService idempotencyService,
+                             ObjectMapper objectMapper) {
         this.accountService = accountService;
+        this.transactionHistoryService = transactionHistoryService;
+        this.transferPipeline = transferPipeline;
+        this.asyncTransferService = asyncTransferService;
+        this.idempotencyService = idempotencyService;
         this.objectMapper = objectMapper;
     }
 
@@ -120,6 +149,46 @@ public class AccountController {
         return ResponseEntity.ok(response);
         }
 
+    @PostMapping("/{id}/shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Shard account balance",
+            description = "Splits a hot account's balance across shard rows so concurrent credits do not serialize on one row lock."
+    )
+    public ResponseEntity<ApiResponse<AccountResponse>> enableSharding(
+            @PathVariable Long id,
+            @Valid @RequestBody EnableShardingRequest request
+    ) {
+        AccountResponse accountResponse = accountService.enableSharding(id, request);
+        ApiResponse<AccountResponse> response = ApiResponse.<AccountResponse>builder()
+                .success(true)
+                .message("Account sharding enabled")
+                .data(accountResponse)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/{id}/lock-mode")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Set account lock mode",
+            description = "Chooses pessimistic row locks, optimistic version checks or adaptive switching for the account's balance updates."
+    )
+    public ResponseEntity<ApiResponse<AccountResponse>> setLockMode(
+            @PathVariable Long id,
+            @Valid @RequestBody AccountLockModeRequest request
+    ) {
+        AccountResponse accountResponse = accountService.setLockMode(id, request);
+        ApiResponse<AccountResponse> response = ApiResponse.<AccountResponse>builder()
+                .success(true)
+                .message("Account lock mode updated")
+                .data(accountResponse)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/transfer")
     @PreAuthorize("hasRole('USER') and @accountService.isAccountOwner(#request.fromAccountId, authentication.name)")
     @Operation(
@@ -127,15 +196,27 @@ public class AccountController {
             description = "Transfers money between two accounts."
     )
     public ResponseEntity<ApiResponse<AccountResponse>> transfer(
-            @RequestHeader("Idempotency-Key") String idempotencyKey,
-            @Valid @RequestBody TransferRequest request
+            @RequestHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+            @Valid @RequestBody TransferRequest request,
+            Authentication authentication,
+            HttpServletRequest servletRequest
     ) {
         if (idempotencyKey == null || idempotencyKey.isBlank()) {
             throw new IllegalArgumentException("Idempotency-Key header is required");
         }
 
-        String requestHash = computeRequestHash(request);
-        AccountResponse accountResponse = accountService.transfer(idempotencyKey, requestHash, request);
+        // Replays are answered by IdempotencyFilter before reaching this method, except with group
+        // commit, where the transfer commits with its group and the pipeline handles the key itself.
+        AccountResponse accountResponse = findUnscopedTransfer(idempotencyKey, servletRequest);
+        if (accountResponse == null) {
+            accountResponse = transferPipeline.isEnabled()
+                    ? transferPipeline.transfer(
+                            authentication.getName() + ":" + idempotencyKey,
+                            computeRequestHash(request),
+                            request
+                    )
+                    : accountService.transfer(request);
+        }
         ApiResponse<AccountResponse> response = ApiResponse.<AccountResponse>builder()
                 .success(true)
                 .message("Transfer successful")
@@ -145,6 +226,68 @@ public class AccountController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/transfers/async")
+    @PreAuthorize("hasRole('USER') and @accountService.isAccountOwner(#request.fromAccountId, authentication.name)")
+    @Operation(
+            summary = "Submit transfer",
+            description = "Queues a transfer for background processing and returns its id; "
+                    + "poll GET /api/transfers/{id} for the outcome."
+    )
+    public ResponseEntity<ApiResponse<TransferSubmissionResponse>> submitTransfer(
+            @RequestHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+            @Valid @RequestBody TransferRequest request,
+            Authentication authentication
+    ) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            throw new IllegalArgumentException("Idempotency-Key header is required");
+        }
+
+        TransferSubmissionResponse submission = asyncTransferService.submit(
+                authentication.getName(),
+                idempotencyKey,
+                computeRequestHash(request),
+                request
+        );
+        ApiResponse<TransferSubmissionResponse> response = ApiResponse.<TransferSubmissionResponse>builder()
+                .success(true)
+                .message("Transfer accepted")
+                .data(submission)
+                .build();
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @PostMapping("/transfers/batch")
+    @PreAuthorize("hasRole('USER') and @accountService.isOwnerOfAllSourceAccounts(#request.transfers, authentication.name)")
+    @Operation(
+            summary = "Batch transfer",
+            description = "Applies many transfers in one transaction and returns a result for each item."
+    )
+    public ResponseEntity<ApiResponse<BatchTransferResponse>> transferBatch(
+            @RequestHeader("Idempotency-Key") String idempotencyKey,
+            @Valid @RequestBody BatchTransferRequest request,
+            Authentication authentication
+    ) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            throw new IllegalArgumentException("Idempotency-Key header is required");
+        }
+
+        String requestHash = computeRequestHash(request);
+        BatchTransferResponse batchResponse = accountService.transferBatch(
+                authentication.getName(),
+                idempotencyKey,
+                requestHash,
+                request
+        );
+        ApiResponse<BatchTransferResponse> response = ApiResponse.<BatchTransferResponse>builder()
+                .success(true)
+                .message("Batch transfer processed")
+                .data(batchResponse)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/{id}/transactions")
     @PreAuthorize("hasRole('ADMIN') or @accountService.isAccountOwner(#id, authentication.name)")
     @Operation(
@@ -162,14 +305,64 @@ public class AccountController {
         return ResponseEntity.ok(response);
     }
 
-    private String computeRequestHash(TransferRequest request) {
+    @GetMapping("/{id}/transactions/page")
+    @PreAuthorize("hasRole('ADMIN') or @accountService.isAccountOwner(#id, authentication.name)")
+    @Operation(
+            summary = "Get account transactions page",
+            description = "Fetches one newest-first page of transaction history. Pass the returned nextCursor to get the following page."
+    )
+    public ResponseEntity<ApiResponse<TransactionPageResponse>> getTransactionPage(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + TransactionHistoryService.DEFAULT_PAGE_SIZE) int limit
+    ) {
+        TransactionPageResponse page = transactionHistoryService.getTransactionPage(id, cursor, limit);
+        ApiResponse<TransactionPageResponse> response = ApiResponse.<TransactionPageResponse>builder()
+                .success(true)
+                .message("Transactions fetched successfully")
+                .data(page)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping(value = "/{id}/transactions/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or @accountService.isAccountOwner(#id, authentication.name)")
+    @Operation(
+            summary = "Export account transactions",
+            description = "Streams the full transaction history as newline-delimited JSON, newest first."
+    )
+    public ResponseEntity<StreamingResponseBody> exportTransactions(@PathVariable Long id) {
+        transactionHistoryService.requireAccount(id);
+        StreamingResponseBody body = outputStream -> transactionHistoryService.exportTransactions(id, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Replays a transfer that an earlier release stored under the bare key. That release hashed its own
+     * DTO, so the hash is taken from the body as {@link LegacyTransferRequestAdvice} read it; the advice
+     * only reads it while the fallback is active. {@code @PreAuthorize} has already checked that the
+     * caller owns the source account.
+     */
+    private AccountResponse findUnscopedTransfer(String idempotencyKey, HttpServletRequest servletRequest) {
+        Object legacyRequest = servletRequest.getAttribute(LegacyTransferRequestAdvice.LEGACY_REQUEST_ATTRIBUTE);
+        if (legacyRequest == null) {
+            return null;
+        }
+        return idempotencyService.findUnscopedResponse(idempotencyKey, computeRequestHash(legacyRequest), AccountResponse.class);
+    }
+
+    private String computeRequestHash(Object request) {
         try {
             String requestJson = objectMapper.writeValueAsString(request);
             MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
             byte[] digest = messageDigest.digest(requestJson.getBytes(StandardCharsets.UTF_8));
             return HexFormat.of().formatHex(digest);
         } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
-            throw new IllegalStateException("Failed to compute transfer request hash", ex);
+            throw new IllegalStateException("Failed to compute request hash", ex);
         }
     }
 }
@@ -0,0 +1,87 @@
+package com.pratham.banking.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratham.banking.dto.TransferRequest;
+import com.pratham.banking.service.IdempotencyService;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+
+/**
+ * Keeps the transfer body in the shape the pre-upgrade {@code TransferRequest} had, so that
+ * {@link AccountController} can hash it the way that release did when it looks up a transfer stored
+ * under the bare idempotency key.
+ *
+ * <p>The old DTO held the amount as the {@link BigDecimal} the client sent, so {@code 100} and
+ * {@code 100.00} hashed differently; the current DTO always writes two fraction digits. The body is
+ * therefore read into {@link LegacyTransferRequest} from the raw bytes, and only while
+ * {@link IdempotencyService#isUnscopedFallbackActive()}.
+ */
+@ControllerAdvice(assignableTypes = AccountController.class)
+public class LegacyTransferRequestAdvice extends RequestBodyAdviceAdapter {
+
+    static final String LEGACY_REQUEST_ATTRIBUTE = LegacyTransferRequestAdvice.class.getName() + ".request";
+
+    private static final String TRANSFER_METHOD = "transfer";
+
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+
+    public LegacyTransferRequestAdvice(IdempotencyService idempotencyService, ObjectMapper objectMapper) {
+        this.idempotencyService = idempotencyService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean supports(MethodParameter methodParameter,
+                            Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return targetType == TransferRequest.class
+                && TRANSFER_METHOD.equals(methodParameter.getExecutable().getName())
+                && idempotencyService.isUnscopedFallbackActive();
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage,
+                                           MethodParameter parameter,
+                                           Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) throws IOException {
+        byte[] body = inputMessage.getBody().readAllBytes();
+        try {
+            RequestContextHolder.currentRequestAttributes().setAttribute(LEGACY_REQUEST_ATTRIBUTE,
+                    objectMapper.readValue(body, LegacyTransferRequest.class), RequestAttributes.SCOPE_REQUEST);
+        } catch (JsonProcessingException ex) {
+            // The regular conversion reports the malformed body.
+        }
+
+        return new HttpInputMessage() {
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body);
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return inputMessage.getHeaders();
+            }
+        };
+    }
+
+    /**
+     * The pre-upgrade transfer DTO, with its fields in the same order so it serializes to the same JSON.
+     */
+    record LegacyTransferRequest(Long fromAccountId, Long toAccountId, BigDecimal amount) {
+    }
+}
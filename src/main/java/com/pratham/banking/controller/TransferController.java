@@ -0,0 +1,45 @@
+package com.pratham.banking.controller;
+
+import com.pratham.banking.dto.ApiResponse;
+import com.pratham.banking.dto.TransferSubmissionResponse;
+import com.pratham.banking.service.AsyncTransferService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for transfers submitted through {@code POST /api/accounts/transfers/async}.
+ */
+@RestController
+@RequestMapping("/api/transfers")
+@Tag(name = "Transfer APIs")
+public class TransferController {
+
+    private final AsyncTransferService asyncTransferService;
+
+    public TransferController(AsyncTransferService asyncTransferService) {
+        this.asyncTransferService = asyncTransferService;
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN') or @asyncTransferService.isSubmitter(#id, authentication.name)")
+    @Operation(
+            summary = "Get transfer status",
+            description = "Returns the status of an asynchronously submitted transfer."
+    )
+    public ResponseEntity<ApiResponse<TransferSubmissionResponse>> getTransfer(@PathVariable String id) {
+        TransferSubmissionResponse submission = asyncTransferService.getSubmission(id);
+        ApiResponse<TransferSubmissionResponse> response = ApiResponse.<TransferSubmissionResponse>builder()
+                .success(true)
+                .message("Transfer fetched successfully")
+                .data(submission)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,23 @@
+package com.pratham.banking.dto;
+
+import com.pratham.banking.entity.AccountLockMode;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO for choosing how an account's balance updates are locked.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountLockModeRequest {
+
+    @NotNull
+    private AccountLockMode lockMode;
+}
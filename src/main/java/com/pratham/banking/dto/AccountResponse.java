@@ -6,7 +6,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -21,6 +20,7 @@ public class AccountResponse {
 
     private Long id;
     private Long userId;
-    private BigDecimal balance;
+    @MoneyAmount
+    private long balance;
     private LocalDateTime createdAt;
 }
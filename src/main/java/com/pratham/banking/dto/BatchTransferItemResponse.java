@@ -0,0 +1,23 @@
+package com.pratham.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO for the outcome of one transfer within a batch.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchTransferItemResponse {
+
+    private int index;
+    private boolean success;
+    private String message;
+    private AccountResponse account;
+}
@@ -0,0 +1,27 @@
+package com.pratham.banking.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * DTO for a batch of transfers applied in a single database transaction.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchTransferRequest {
+
+    @NotEmpty
+    @Size(max = 1000)
+    private List<@Valid TransferRequest> transfers;
+}
@@ -0,0 +1,24 @@
+package com.pratham.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * DTO for batch transfer response payload.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchTransferResponse {
+
+    private int succeeded;
+    private int failed;
+    private List<BatchTransferItemResponse> results;
+}
@@ -8,8 +8,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-
 /**
  * DTO for deposit request payload.
  */
@@ -22,5 +20,6 @@ public class DepositRequest {
 
     @NotNull
     @Positive
-    private BigDecimal amount;
+    @MoneyAmount
+    private Long amount;
 }
@@ -0,0 +1,26 @@
+package com.pratham.banking.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO for splitting a hot account's balance across shard rows.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EnableShardingRequest {
+
+    @NotNull
+    @Min(2)
+    @Max(256)
+    private Integer shardCount;
+}
@@ -0,0 +1,58 @@
+package com.pratham.banking.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.pratham.banking.entity.Money;
+
+import java.io.IOException;
+
+/**
+ * JSON form of {@link Money} amounts: a plain decimal number with two fraction digits, such as
+ * {@code 100.25}, so clients see the same payloads as when amounts were {@code BigDecimal}.
+ */
+public final class MoneyJson {
+
+    private MoneyJson() {
+    }
+
+    /**
+     * Writes minor units as a decimal number.
+     */
+    public static class Serializer extends StdSerializer<Long> {
+
+        public Serializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long minorUnits, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(Money.toString(minorUnits));
+        }
+    }
+
+    /**
+     * Reads a decimal number, or a string holding one, straight from the parser's buffer into minor units.
+     */
+    public static class Deserializer extends StdDeserializer<Long> {
+
+        public Deserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT
+                    || token == JsonToken.VALUE_NUMBER_FLOAT
+                    || token == JsonToken.VALUE_STRING) {
+                return Money.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            }
+            return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+    }
+}
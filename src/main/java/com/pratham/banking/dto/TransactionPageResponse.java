@@ -0,0 +1,24 @@
+package com.pratham.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * DTO for one keyset-paginated page of transaction history, newest first.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionPageResponse {
+
+    private List<TransactionResponse> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
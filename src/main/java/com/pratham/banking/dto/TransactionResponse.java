@@ -7,7 +7,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -23,7 +22,8 @@ public class TransactionResponse {
     private Long id;
     private Long fromAccountId;
     private Long toAccountId;
-    private BigDecimal amount;
+    @MoneyAmount
+    private long amount;
     private TransactionType type;
     private LocalDateTime createdAt;
 }
@@ -8,8 +8,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-
 /**
  * DTO for transfer request payload.
  */
@@ -28,5 +26,6 @@ public class TransferRequest {
 
     @NotNull
     @Positive
-    private BigDecimal amount;
+    @MoneyAmount
+    private Long amount;
 }
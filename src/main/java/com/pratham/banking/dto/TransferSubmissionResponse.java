@@ -0,0 +1,31 @@
+package com.pratham.banking.dto;
+
+import com.pratham.banking.entity.TransferSubmissionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for the status of an asynchronously submitted transfer.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransferSubmissionResponse {
+
+    private String id;
+    private TransferSubmissionStatus status;
+    private Long fromAccountId;
+    private Long toAccountId;
+    @MoneyAmount
+    private long amount;
+    private String failureReason;
+    private LocalDateTime createdAt;
+    private LocalDateTime processedAt;
+}
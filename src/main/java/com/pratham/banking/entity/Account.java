@@ -1,7 +1,10 @@
 package com.pratham.banking.entity;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -10,13 +13,14 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -39,18 +43,45 @@ public class Account {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    /**
+     * Balance in {@link Money} minor units.
+     */
+    @Convert(converter = MoneyConverter.class)
     @Column(nullable = false, precision = 19, scale = 2)
-    @Builder.Default
-    private BigDecimal balance = BigDecimal.ZERO;
+    private long balance;
+
+    /**
+     * Number of balance shards when the account is sharded, otherwise {@code null}.
+     * Once set it is never lowered.
+     */
+    @Column(name = "shard_count")
+    private Integer shardCount;
+
+    /**
+     * Lock mode for balance updates, or {@code null} to use {@code app.account.locking.mode}.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "lock_mode", length = 16)
+    private AccountLockMode lockMode;
+
+    /**
+     * Incremented by every balance update, including the bulk updates in {@code AccountRepository},
+     * so optimistic writers detect any concurrent change.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
 
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @PrePersist
     public void onCreate() {
-        if (balance == null) {
-            balance = BigDecimal.ZERO;
-        }
         this.createdAt = LocalDateTime.now();
     }
+
+    public boolean isSharded() {
+        return shardCount != null && shardCount > 1;
+    }
 }
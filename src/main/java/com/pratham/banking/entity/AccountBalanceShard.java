@@ -0,0 +1,51 @@
+package com.pratham.banking.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Holds one slice of a hot account's balance so that concurrent credits can lock different rows.
+ */
+@Entity
+@Table(
+    name = "account_balance_shards",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_account_balance_shards_account_shard", columnNames = {"account_id", "shard_index"})
+    },
+    indexes = {
+        @Index(name = "idx_account_balance_shards_account_id", columnList = "account_id")
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountBalanceShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(name = "shard_index", nullable = false, updatable = false)
+    private Integer shardIndex;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 19, scale = 2)
+    private long balance;
+}
@@ -0,0 +1,22 @@
+package com.pratham.banking.entity;
+
+/**
+ * How balance updates on an account guard against concurrent writers.
+ */
+public enum AccountLockMode {
+
+    /**
+     * Locks the account row with {@code SELECT ... FOR UPDATE} for the whole transaction.
+     */
+    PESSIMISTIC,
+
+    /**
+     * Reads the account without a lock and guards the update with its version, retrying on conflict.
+     */
+    OPTIMISTIC,
+
+    /**
+     * Optimistic while the account sees few conflicts, pessimistic while it is contended.
+     */
+    ADAPTIVE
+}
@@ -0,0 +1,34 @@
+package com.pratham.banking.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marks a cross-shard transfer as credited on the destination account's shard. It is inserted in the
+ * credit's transaction, so retrying the credit step after a crash never credits twice.
+ */
+@Entity
+@Table(name = "cross_shard_credits")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CrossShardCredit {
+
+    @Id
+    @Column(name = "transfer_id", length = 36)
+    private String transferId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
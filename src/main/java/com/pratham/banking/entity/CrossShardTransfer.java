@@ -0,0 +1,63 @@
+package com.pratham.banking.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tracks a transfer whose accounts live on different database shards. The row is written on the
+ * source account's shard in the same transaction as the debit, so a debited transfer is never lost.
+ */
+@Entity
+@Table(
+    name = "cross_shard_transfers",
+    indexes = {
+        @Index(name = "idx_cross_shard_transfers_status_created", columnList = "status, created_at")
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CrossShardTransfer {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "from_account_id", nullable = false)
+    private Long fromAccountId;
+
+    @Column(name = "to_account_id", nullable = false)
+    private Long toAccountId;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 19, scale = 2)
+    private long amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private CrossShardTransferStatus status;
+
+    /**
+     * The source side's {@code transactions} row. A refund keeps it and adds a compensating credit.
+     */
+    @Column(name = "source_transaction_id")
+    private Long sourceTransactionId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,18 @@
+package com.pratham.banking.entity;
+
+/**
+ * Lifecycle states of a transfer between accounts on different database shards.
+ */
+public enum CrossShardTransferStatus {
+
+    /**
+     * The source account is debited; the destination has not been confirmed as credited yet.
+     */
+    PENDING,
+    COMPLETED,
+
+    /**
+     * The destination could not be credited and the debit was returned to the source account.
+     */
+    REFUNDED
+}
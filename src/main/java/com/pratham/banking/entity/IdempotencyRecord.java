@@ -2,6 +2,8 @@ package com.pratham.banking.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.Lob;
@@ -39,10 +41,20 @@ public class IdempotencyRecord {
     @Column(nullable = false)
     private String requestHash;
 
+    /**
+     * Encoded response; empty while the record is {@link IdempotencyStatus#IN_PROGRESS}.
+     */
     @Lob
     @Column(nullable = false)
     private String responseBody;
 
+    /**
+     * Record state; {@code null} for records written before claims existed, which are always complete.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private IdempotencyStatus status;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -52,4 +64,8 @@ public class IdempotencyRecord {
             createdAt = LocalDateTime.now();
         }
     }
+
+    public boolean isInProgress() {
+        return status == IdempotencyStatus.IN_PROGRESS;
+    }
 }
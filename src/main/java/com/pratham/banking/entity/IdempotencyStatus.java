@@ -0,0 +1,9 @@
+package com.pratham.banking.entity;
+
+/**
+ * Lifecycle states of an idempotency record.
+ */
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
@@ -0,0 +1,180 @@
+package com.pratham.banking.entity;
+
+import com.pratham.banking.exception.InvalidAmountException;
+
+import java.math.BigDecimal;
+
+/**
+ * Money amounts held as a {@code long} count of minor units (cents).
+ *
+ * <p>Amounts have the {@value #SCALE} fraction digits of the {@code numeric(19, 2)} balance and amount
+ * columns and are limited to {@link #MAX}, just under 10<sup>15</sup> in major units, so the sum of any
+ * two amounts still fits a {@code long} before it is range checked. Keeping amounts as primitives lets
+ * balance arithmetic run without allocating; {@link BigDecimal} only appears where an amount crosses
+ * into JDBC or text.
+ */
+public final class Money {
+
+    /**
+     * Number of fraction digits of every amount.
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Largest amount in minor units, {@code 999999999999999.99} in major units.
+     */
+    public static final long MAX = 99_999_999_999_999_999L;
+
+    private static final int UNITS_PER_MAJOR = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Returns {@code a + b}.
+     *
+     * @throws InvalidAmountException if the sum is outside {@code -MAX..MAX}
+     */
+    public static long add(long a, long b) {
+        return checkRange(checkRange(a) + checkRange(b));
+    }
+
+    /**
+     * Returns {@code a - b}.
+     *
+     * @throws InvalidAmountException if the difference is outside {@code -MAX..MAX}
+     */
+    public static long subtract(long a, long b) {
+        return checkRange(checkRange(a) - checkRange(b));
+    }
+
+    /**
+     * Returns the amount unchanged if it is within {@code -MAX..MAX}.
+     *
+     * @throws InvalidAmountException otherwise
+     */
+    public static long checkRange(long minorUnits) {
+        if (minorUnits > MAX || minorUnits < -MAX) {
+            throw new InvalidAmountException("Amount exceeds the supported range");
+        }
+        return minorUnits;
+    }
+
+    /**
+     * Converts a decimal amount to minor units.
+     *
+     * @throws InvalidAmountException if the amount has more than {@value #SCALE} fraction digits or is
+     *                                out of range
+     */
+    public static long fromDecimal(BigDecimal amount) {
+        try {
+            // Column values have scale 2, so this is the only allocation when reading a row.
+            return checkRange(amount.movePointRight(SCALE).longValueExact());
+        } catch (ArithmeticException ex) {
+            if (amount.stripTrailingZeros().scale() > SCALE) {
+                throw new InvalidAmountException("Amount must not have more than " + SCALE + " decimal places");
+            }
+            throw new InvalidAmountException("Amount exceeds the supported range");
+        }
+    }
+
+    /**
+     * Converts minor units to a decimal amount with scale {@value #SCALE}.
+     */
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Parses a plain decimal number such as {@code 12}, {@code -0.5} or {@code 100.25} into minor units.
+     * Numbers in exponent notation are accepted through {@link #fromDecimal}.
+     *
+     * @throws InvalidAmountException if the text is not a number, has more than {@value #SCALE}
+     *                                significant fraction digits or is out of range
+     */
+    public static long parse(char[] text, int offset, int length) {
+        int end = offset + length;
+        int position = offset;
+        boolean negative = false;
+        if (position < end && (text[position] == '-' || text[position] == '+')) {
+            negative = text[position] == '-';
+            position++;
+        }
+
+        long units = 0;
+        int integerDigits = 0;
+        while (position < end && isDigit(text[position])) {
+            if (units > MAX / 10) {
+                throw new InvalidAmountException("Amount exceeds the supported range");
+            }
+            units = units * 10 + (text[position++] - '0');
+            integerDigits++;
+        }
+        if (units > MAX / UNITS_PER_MAJOR) {
+            throw new InvalidAmountException("Amount exceeds the supported range");
+        }
+
+        int fractionDigits = 0;
+        if (position < end && text[position] == '.') {
+            position++;
+            while (position < end && isDigit(text[position])) {
+                int digit = text[position++] - '0';
+                if (fractionDigits < SCALE) {
+                    units = units * 10 + digit;
+                } else if (digit != 0) {
+                    throw new InvalidAmountException("Amount must not have more than " + SCALE + " decimal places");
+                }
+                fractionDigits++;
+            }
+        }
+
+        if (position < end && (text[position] == 'e' || text[position] == 'E')) {
+            return fromDecimal(decimal(text, offset, length));
+        }
+        if (position != end || integerDigits + fractionDigits == 0) {
+            throw new InvalidAmountException("Amount is not a valid number");
+        }
+
+        for (int i = Math.min(fractionDigits, SCALE); i < SCALE; i++) {
+            units *= 10;
+        }
+        return checkRange(negative ? -units : units);
+    }
+
+    /**
+     * Parses a decimal number into minor units; see {@link #parse(char[], int, int)}.
+     */
+    public static long parse(String text) {
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Formats minor units as a plain decimal number with {@value #SCALE} fraction digits, such as
+     * {@code 100.00} or {@code -0.05}.
+     */
+    public static String toString(long minorUnits) {
+        long major = Math.abs(minorUnits / UNITS_PER_MAJOR);
+        int minor = (int) Math.abs(minorUnits % UNITS_PER_MAJOR);
+        StringBuilder builder = new StringBuilder(24);
+        if (minorUnits < 0) {
+            builder.append('-');
+        }
+        builder.append(major).append('.');
+        if (minor < 10) {
+            builder.append('0');
+        }
+        return builder.append(minor).toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static BigDecimal decimal(char[] text, int offset, int length) {
+        try {
+            return new BigDecimal(text, offset, length);
+        } catch (NumberFormatException ex) {
+            throw new InvalidAmountException("Amount is not a valid number");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.pratham.banking.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records that the money-moving step of an idempotent request committed on a database shard. It is
+ * written in the step's own transaction on that shard, so a retry of the request finds it and replays
+ * the step's result instead of moving the money again, even if the idempotency record on the home
+ * shard was never completed.
+ */
+@Entity
+@Table(
+    name = "shard_step_markers",
+    indexes = {
+        @Index(name = "idx_shard_step_markers_created_at", columnList = "created_at")
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ShardStepMarker {
+
+    /**
+     * The request's idempotency key and the name of the step within the request.
+     */
+    @Id
+    @Column(name = "step_key", nullable = false, updatable = false)
+    private String stepKey;
+
+    @Lob
+    @Column(name = "result_body", nullable = false)
+    private String resultBody;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,6 +1,7 @@
 package com.pratham.banking.entity;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -9,6 +10,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,7 +18,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -26,8 +27,8 @@ import java.time.LocalDateTime;
 @Table(
     name = "transactions",
     indexes = {
-        @Index(name = "idx_transactions_from_account_id", columnList = "from_account_id"),
-        @Index(name = "idx_transactions_to_account_id", columnList = "to_account_id")
+        @Index(name = "idx_transactions_from_account_created", columnList = "from_account_id, created_at DESC, id DESC"),
+        @Index(name = "idx_transactions_to_account_created", columnList = "to_account_id, created_at DESC, id DESC")
     }
 )
 @Getter
@@ -37,8 +38,16 @@ import java.time.LocalDateTime;
 @Builder
 public class Transaction {
 
+    public static final String ID_SEQUENCE = "transactions_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * Sequence-backed ids let Hibernate assign keys before the INSERT, so transaction rows
+     * can be written in JDBC batches; the pooled allocation fetches 50 ids per round trip.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_id_generator")
+    @SequenceGenerator(name = "transactions_id_generator", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "from_account_id")
@@ -47,14 +56,18 @@ public class Transaction {
     @Column(name = "to_account_id")
     private Long toAccountId;
 
+    /**
+     * Amount in {@link Money} minor units.
+     */
+    @Convert(converter = MoneyConverter.class)
     @Column(nullable = false, precision = 19, scale = 2)
-    private BigDecimal amount;
+    private long amount;
 
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private TransactionType type;
 
-    @Column(nullable = false, updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @PrePersist
@@ -0,0 +1,80 @@
+package com.pratham.banking.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A transfer accepted by {@code POST /api/accounts/transfers/async}. The table is the queue the
+ * asynchronous transfer workers drain: a row is committed before the request is answered and leaves
+ * {@link TransferSubmissionStatus#PENDING} in the same transaction that applies the transfer.
+ */
+@Entity
+@Table(
+    name = "transfer_submissions",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_transfer_submissions_idempotency_key", columnNames = "idempotency_key")
+    },
+    indexes = {
+        @Index(name = "idx_transfer_submissions_status_created", columnList = "status, created_at")
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransferSubmission {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    /**
+     * The submitting user's name and the request's idempotency key.
+     */
+    @Column(name = "idempotency_key", nullable = false, updatable = false)
+    private String idempotencyKey;
+
+    @Column(name = "request_hash", nullable = false, updatable = false)
+    private String requestHash;
+
+    @Column(nullable = false, updatable = false)
+    private String username;
+
+    @Column(name = "from_account_id", nullable = false)
+    private Long fromAccountId;
+
+    @Column(name = "to_account_id", nullable = false)
+    private Long toAccountId;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 19, scale = 2)
+    private long amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private TransferSubmissionStatus status;
+
+    @Column(name = "failure_reason")
+    private String failureReason;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
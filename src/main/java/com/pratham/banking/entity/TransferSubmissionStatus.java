@@ -0,0 +1,18 @@
+package com.pratham.banking.entity;
+
+/**
+ * Lifecycle states of a transfer submitted for asynchronous processing.
+ */
+public enum TransferSubmissionStatus {
+
+    /**
+     * Queued and not applied yet.
+     */
+    PENDING,
+    COMPLETED,
+
+    /**
+     * Rejected when it was processed, for example for lack of funds; no money moved.
+     */
+    FAILED
+}
@@ -0,0 +1,16 @@
+package com.pratham.banking.exception;
+
+/**
+ * Exception thrown when a request arrives while another request with the same idempotency key is still executing.
+ */
+public class IdempotencyInProgressException extends RuntimeException {
+
+    /**
+     * Creates a new idempotency-in-progress exception with the provided message.
+     *
+     * @param message the exception message
+     */
+    public IdempotencyInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.pratham.banking.exception;
+
+/**
+ * Exception thrown when a money amount cannot be represented (too many decimal places or out of range).
+ */
+public class InvalidAmountException extends RuntimeException {
+
+    /**
+     * Creates a new invalid-amount exception with the provided message.
+     *
+     * @param message the exception message
+     */
+    public InvalidAmountException(String message) {
+        super(message);
+    }
+}
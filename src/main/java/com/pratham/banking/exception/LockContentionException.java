@@ -0,0 +1,17 @@
+package com.pratham.banking.exception;
+
+/**
+ * Exception thrown when an operation keeps failing to acquire its row locks after all retries.
+ */
+public class LockContentionException extends RuntimeException {
+
+    /**
+     * Creates a new lock-contention exception with the provided message and cause.
+     *
+     * @param message the exception message
+     * @param cause   the last lock failure
+     */
+    public LockContentionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package com.pratham.banking.exception;
+
+/**
+ * Exception thrown when a request cannot obtain a concurrency permit before its wait limit expires.
+ */
+public class ServerBusyException extends RuntimeException {
+
+    /**
+     * Creates a new server-busy exception with the provided message.
+     *
+     * @param message the exception message
+     */
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,117 @@
+package com.pratham.banking.filter;
+
+import com.pratham.banking.exception.ServerBusyException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many API requests run at once, with separate permit pools for reads and writes.
+ *
+ * <p>With virtual threads the servlet container no longer bounds concurrency, so a burst against a hot
+ * account would park thousands of requests on the JDBC connection pool and time them out there. The
+ * permits keep the number of requests holding or waiting for a connection near the pool size, and the
+ * separate read pool keeps {@code GET} requests moving while writers queue on row locks. A request that
+ * cannot get a permit within {@code app.concurrency.acquire-timeout-ms} gets a 503.
+ *
+ * <p>Unless set explicitly, the permits split {@code spring.datasource.hikari.maximum-pool-size} two to
+ * three between reads and writes, so resizing the pool resizes the limits with it.
+ *
+ * <p>The filter is registered when {@code app.concurrency.limit.enabled} is set, or when virtual threads
+ * are actually in use. {@code spring.threads.virtual.enabled} only takes effect on a Java 21 runtime;
+ * on Java 17 Boot ignores it, the container keeps its platform thread pool, and this filter stays off
+ * unless enabled explicitly.
+ *
+ * <p>Runs ahead of the Spring Security chain, since authentication may also query the database.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@Conditional(ConcurrencyLimitFilter.LimitEnabledCondition.class)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore readPermits;
+    private final Semaphore writePermits;
+    private final long acquireTimeoutMs;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+
+    public ConcurrencyLimitFilter(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                  @Value("${app.concurrency.read-permits:0}") int readPermits,
+                                  @Value("${app.concurrency.write-permits:0}") int writePermits,
+                                  @Value("${app.concurrency.acquire-timeout-ms:2000}") long acquireTimeoutMs,
+                                  @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver) {
+        int derivedReadPermits = Math.max(1, poolSize * 2 / 5);
+        int derivedWritePermits = Math.max(1, poolSize - derivedReadPermits);
+        this.readPermits = new Semaphore(readPermits > 0 ? readPermits : derivedReadPermits, true);
+        this.writePermits = new Semaphore(writePermits > 0 ? writePermits : derivedWritePermits, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getServletPath().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Semaphore permits = "GET".equals(request.getMethod()) ? readPermits : writePermits;
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            handlerExceptionResolver.resolveException(
+                    request,
+                    response,
+                    null,
+                    new ServerBusyException("Server is busy, please retry")
+            );
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    static class LimitEnabledCondition extends AnyNestedCondition {
+
+        LimitEnabledCondition() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnProperty(name = "app.concurrency.limit.enabled", havingValue = "true")
+        static class ExplicitlyEnabled {
+        }
+
+        @ConditionalOnThreading(Threading.VIRTUAL)
+        static class VirtualThreads {
+        }
+    }
+}
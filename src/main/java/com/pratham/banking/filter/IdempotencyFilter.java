@@ -0,0 +1,264 @@
+package com.pratham.banking.filter;
+
+import com.pratham.banking.service.IdempotencyService;
+import com.pratham.banking.service.IdempotentHttpResponse;
+import com.pratham.banking.service.TransferPipeline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Makes mutating account endpoints retry-safe at the HTTP layer.
+ *
+ * <p>A request carrying an {@code Idempotency-Key} header is hashed from its method, URI and raw body
+ * bytes as they are read. The handler then runs through {@link IdempotencyService#execute}, and a
+ * successful response is stored as its status, content type and body bytes. A retry with the same key
+ * gets those bytes written back without reaching the controller or touching Jackson. Error responses are
+ * passed through and not stored, so the request can be retried. The handler runs inside the transaction
+ * that records the response, so the stored bytes commit or roll back together with the handler's writes.
+ *
+ * <p>Keys are scoped to the authenticated user. This filter runs after the Spring Security chain.
+ * Transfers stored under the bare key by an earlier release are not found here: their hash was taken
+ * from the DTO, so the transfer handler looks them up itself and its replayed response is then stored
+ * under the scoped key.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final Pattern IDEMPOTENT_PATHS = Pattern.compile(
+            "/api/accounts(/transfer|/\\d+/(deposit|withdraw))?"
+    );
+
+    private static final String TRANSFER_PATH = "/api/accounts/transfer";
+
+    private final IdempotencyService idempotencyService;
+    private final TransferPipeline transferPipeline;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+
+    public IdempotencyFilter(IdempotencyService idempotencyService,
+                             TransferPipeline transferPipeline,
+                             @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver) {
+        this.idempotencyService = idempotencyService;
+        this.transferPipeline = transferPipeline;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+                || !IDEMPOTENT_PATHS.matcher(request.getServletPath()).matches()
+                // A grouped transfer does not commit in this filter's transaction; the pipeline takes the key.
+                || transferPipeline.isEnabled() && TRANSFER_PATH.equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (authentication == null || !authentication.isAuthenticated() || idempotencyKey.isBlank()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        String scopedKey = authentication.getName() + ":" + idempotencyKey;
+
+        IdempotentHttpResponse storedResponse;
+        try {
+            storedResponse = idempotencyService.execute(scopedKey, cachedRequest.getBodyHash(), () -> {
+                cachingResponse.resetBuffer();
+                invokeChain(filterChain, cachedRequest, cachingResponse);
+                rethrowLockFailure(cachedRequest);
+
+                int status = cachingResponse.getStatus();
+                if (status < 200 || status >= 300) {
+                    throw new UnstoredResponseException();
+                }
+
+                return new IdempotentHttpResponse(
+                        status,
+                        cachingResponse.getContentType(),
+                        cachingResponse.getContentAsByteArray()
+                );
+            });
+        } catch (UnstoredResponseException ex) {
+            cachingResponse.copyBodyToResponse();
+            return;
+        } catch (RuntimeException ex) {
+            if (handlerExceptionResolver.resolveException(request, response, null, ex) == null) {
+                throw ex;
+            }
+            return;
+        }
+
+        if (cachingResponse.isCommitted() || cachingResponse.getContentSize() > 0) {
+            cachingResponse.copyBodyToResponse();
+            return;
+        }
+
+        response.setStatus(storedResponse.status());
+        if (storedResponse.contentType() != null) {
+            response.setContentType(storedResponse.contentType());
+        }
+        response.setContentLength(storedResponse.body().length);
+        response.getOutputStream().write(storedResponse.body());
+    }
+
+    private void invokeChain(FilterChain filterChain,
+                             HttpServletRequest request,
+                             HttpServletResponse response) {
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (ServletException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Rethrows a lock conflict that the handler's exception resolver turned into an error response, so
+     * the transaction around the handler is rolled back and retried by {@link IdempotencyService}.
+     */
+    private void rethrowLockFailure(HttpServletRequest request) {
+        Object handlerException = request.getAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE);
+        if (handlerException instanceof ConcurrencyFailureException lockFailure) {
+            request.removeAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE);
+            throw lockFailure;
+        }
+    }
+
+    /**
+     * Signals that the handler's response must not be stored; the transaction rolls back, the claim is
+     * released and the buffered response is sent as is.
+     */
+    private static class UnstoredResponseException extends RuntimeException {
+
+        UnstoredResponseException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Reads the request body once, hashing it chunk by chunk, and serves the buffered bytes to the handler.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+        private final String bodyHash;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+
+            MessageDigest messageDigest = newDigest();
+            messageDigest.update((request.getMethod() + " " + request.getRequestURI() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+
+            ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream(Math.max(request.getContentLength(), 0));
+            byte[] chunk = new byte[8192];
+            try (InputStream inputStream = request.getInputStream()) {
+                int read;
+                while ((read = inputStream.read(chunk)) != -1) {
+                    messageDigest.update(chunk, 0, read);
+                    bodyBuffer.write(chunk, 0, read);
+                }
+            }
+
+            this.body = bodyBuffer.toByteArray();
+            this.bodyHash = HexFormat.of().formatHex(messageDigest.digest());
+        }
+
+        String getBodyHash() {
+            return bodyHash;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return inputStream.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return inputStream.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("Asynchronous reads are not supported");
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+
+        private static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 is not available", ex);
+            }
+        }
+    }
+}
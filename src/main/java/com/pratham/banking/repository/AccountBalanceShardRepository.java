@@ -0,0 +1,39 @@
+package com.pratham.banking.repository;
+
+import com.pratham.banking.entity.AccountBalanceShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for AccountBalanceShard entity.
+ */
+public interface AccountBalanceShardRepository extends JpaRepository<AccountBalanceShard, Long> {
+
+    long countByAccountId(Long accountId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceShard s WHERE s.accountId = :accountId AND s.shardIndex = :shardIndex")
+    Optional<AccountBalanceShard> findByAccountIdAndShardIndexForUpdate(
+            @Param("accountId") Long accountId,
+            @Param("shardIndex") Integer shardIndex
+    );
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceShard s WHERE s.accountId = :accountId ORDER BY s.shardIndex")
+    List<AccountBalanceShard> findByAccountIdForUpdate(@Param("accountId") Long accountId);
+
+    /**
+     * Returns the sum of the shard balances as a decimal. The query is native because JPQL would read
+     * the sum as the converted {@code long} attribute type and drop its fraction digits.
+     */
+    @Query(value = "SELECT COALESCE(SUM(balance), 0) FROM account_balance_shards "
+            + "WHERE account_id = :accountId", nativeQuery = true)
+    BigDecimal sumBalanceByAccountId(@Param("accountId") Long accountId);
+}
@@ -1,12 +1,16 @@
 package com.pratham.banking.repository;
 
 import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.AccountLockMode;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,7 +23,44 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
 
     boolean existsByIdAndUser_Username(Long id, String username);
 
+    /**
+     * Read-only so that, with a read replica configured, authorization checks that miss the ownership
+     * cache are served by the replica.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT a.user.username FROM Account a WHERE a.id = :id")
+    Optional<String> findOwnerUsernameById(@Param("id") Long id);
+
+    @Query("SELECT a.shardCount FROM Account a WHERE a.id = :id")
+    Optional<Integer> findShardCountById(@Param("id") Long id);
+
+    @Query("SELECT a.lockMode FROM Account a WHERE a.id = :id")
+    Optional<AccountLockMode> findLockModeById(@Param("id") Long id);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT a FROM Account a WHERE a.id = :id")
     Optional<Account> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id IN :ids ORDER BY a.id")
+    List<Account> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Debits the account only if its balance covers the amount.
+     *
+     * @return the number of rows updated; {@code 0} if the account is missing or the balance is insufficient
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1 "
+            + "WHERE a.id = :id AND a.balance >= :amount")
+    int debitIfSufficient(@Param("id") Long id, @Param("amount") long amount);
+
+    /**
+     * Credits the account.
+     *
+     * @return the number of rows updated; {@code 0} if the account is missing
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1 WHERE a.id = :id")
+    int credit(@Param("id") Long id, @Param("amount") long amount);
 }
@@ -0,0 +1,26 @@
+package com.pratham.banking.repository;
+
+import com.pratham.banking.entity.CrossShardCredit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository interface for CrossShardCredit entity.
+ */
+public interface CrossShardCreditRepository extends JpaRepository<CrossShardCredit, String> {
+
+    /**
+     * Inserts the marker unless it exists. A concurrent insert of the same transfer waits for the
+     * other transaction and then inserts nothing.
+     *
+     * @return {@code 1} if this call inserted the marker, {@code 0} if the transfer was already credited
+     */
+    @Modifying
+    @Query(value = "INSERT INTO cross_shard_credits (transfer_id, created_at) VALUES (:transferId, :createdAt) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("transferId") String transferId, @Param("createdAt") LocalDateTime createdAt);
+}
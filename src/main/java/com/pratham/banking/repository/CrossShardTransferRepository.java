@@ -0,0 +1,33 @@
+package com.pratham.banking.repository;
+
+import com.pratham.banking.entity.CrossShardTransfer;
+import com.pratham.banking.entity.CrossShardTransferStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for CrossShardTransfer entity.
+ */
+public interface CrossShardTransferRepository extends JpaRepository<CrossShardTransfer, String> {
+
+    List<CrossShardTransfer> findByStatusAndCreatedAtBeforeOrderByCreatedAt(CrossShardTransferStatus status,
+                                                                            LocalDateTime createdAt,
+                                                                            Pageable pageable);
+
+    /**
+     * Moves the transfer from {@code from} to {@code to}.
+     *
+     * @return {@code 1} if the transfer was in state {@code from}, otherwise {@code 0}
+     */
+    @Modifying
+    @Query("UPDATE CrossShardTransfer t SET t.status = :to WHERE t.id = :id AND t.status = :from")
+    int updateStatus(@Param("id") String id,
+                     @Param("from") CrossShardTransferStatus from,
+                     @Param("to") CrossShardTransferStatus to);
+}
@@ -2,9 +2,72 @@ package com.pratham.banking.repository;
 
 import com.pratham.banking.entity.IdempotencyRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 
 /**
  * Repository interface for IdempotencyRecord entity.
  */
 public interface IdempotencyRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Stores the response on a claim, provided the claim still belongs to the caller.
+     *
+     * @param claimedAt the {@code createdAt} written when the caller claimed the key, used as a fencing token
+     * @return {@code 1} if the claim was completed, {@code 0} if it was taken over or removed
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE IdempotencyRecord r SET r.status = com.pratham.banking.entity.IdempotencyStatus.COMPLETED, "
+            + "r.responseBody = :responseBody "
+            + "WHERE r.key = :key AND r.status = com.pratham.banking.entity.IdempotencyStatus.IN_PROGRESS "
+            + "AND r.createdAt = :claimedAt")
+    int complete(
+            @Param("key") String key,
+            @Param("claimedAt") LocalDateTime claimedAt,
+            @Param("responseBody") String responseBody
+    );
+
+    /**
+     * Takes over an in-progress claim whose owner stopped before completing or releasing it.
+     *
+     * @return {@code 1} if this caller now owns the claim
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE IdempotencyRecord r SET r.createdAt = :now "
+            + "WHERE r.key = :key AND r.status = com.pratham.banking.entity.IdempotencyStatus.IN_PROGRESS "
+            + "AND r.createdAt < :staleBefore")
+    int takeOverStaleClaim(
+            @Param("key") String key,
+            @Param("staleBefore") LocalDateTime staleBefore,
+            @Param("now") LocalDateTime now
+    );
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r "
+            + "WHERE r.key = :key AND r.status = com.pratham.banking.entity.IdempotencyStatus.IN_PROGRESS "
+            + "AND r.createdAt = :claimedAt")
+    int releaseClaim(@Param("key") String key, @Param("claimedAt") LocalDateTime claimedAt);
+
+    /**
+     * Deletes up to {@code limit} records created before {@code threshold}, oldest first, walking
+     * {@code idx_idempotency_records_created_at}.
+     *
+     * @return the number of records deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_records WHERE key IN ("
+            + "SELECT key FROM idempotency_records WHERE created_at < :threshold "
+            + "ORDER BY created_at LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredBatch(@Param("threshold") LocalDateTime threshold, @Param("limit") int limit);
+
+    /**
+     * Serializes claims of the same key until the end of the current transaction. Only needed when the
+     * table is partitioned, because the primary key then includes {@code created_at} and no longer
+     * guarantees a single record per key.
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext(:key))) AS claim_lock", nativeQuery = true)
+    Integer lockKey(@Param("key") String key);
 }
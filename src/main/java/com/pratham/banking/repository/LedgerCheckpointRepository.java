@@ -0,0 +1,10 @@
+package com.pratham.banking.repository;
+
+import com.pratham.banking.entity.LedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repository interface for LedgerCheckpoint entity.
+ */
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, String> {
+}
@@ -0,0 +1,26 @@
+package com.pratham.banking.repository;
+
+import com.pratham.banking.entity.ShardStepMarker;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository interface for ShardStepMarker entity.
+ */
+public interface ShardStepMarkerRepository extends JpaRepository<ShardStepMarker, String> {
+
+    /**
+     * Deletes up to {@code limit} markers created before {@code threshold}, oldest first.
+     *
+     * @return the number of markers deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM shard_step_markers WHERE step_key IN ("
+            + "SELECT step_key FROM shard_step_markers WHERE created_at < :threshold "
+            + "ORDER BY created_at LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredBatch(@Param("threshold") LocalDateTime threshold, @Param("limit") int limit);
+}
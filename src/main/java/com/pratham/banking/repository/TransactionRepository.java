@@ -1,17 +1,65 @@
 package com.pratham.banking.repository;
 
 import com.pratham.banking.entity.Transaction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for Transaction entity.
+ *
+ * <p>History queries are written as a {@code UNION ALL} of a debit-side and a credit-side branch
+ * instead of {@code from_account_id = :id OR to_account_id = :id}. Each branch is an ordered range
+ * scan of its composite {@code (account_id, created_at DESC, id DESC)} index, so the database merges
+ * two pre-sorted streams rather than bitmap-OR-ing two indexes and sorting every match. A row never
+ * appears in both branches because a transfer's source and destination always differ.
  */
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
-	@Query("SELECT t FROM Transaction t WHERE t.fromAccountId = :accountId OR t.toAccountId = :accountId ORDER BY t.createdAt DESC")
+	@Query(value = "SELECT * FROM ("
+			+ "SELECT * FROM transactions WHERE from_account_id = :accountId "
+			+ "UNION ALL "
+			+ "SELECT * FROM transactions WHERE to_account_id = :accountId"
+			+ ") t ORDER BY t.created_at DESC, t.id DESC", nativeQuery = true)
 	List<Transaction> findByAccountId(@Param("accountId") Long accountId);
+
+	@Query(value = "SELECT * FROM ("
+			+ "(SELECT * FROM transactions WHERE from_account_id = :accountId "
+			+ "ORDER BY created_at DESC, id DESC LIMIT :limit) "
+			+ "UNION ALL "
+			+ "(SELECT * FROM transactions WHERE to_account_id = :accountId "
+			+ "ORDER BY created_at DESC, id DESC LIMIT :limit)"
+			+ ") t ORDER BY t.created_at DESC, t.id DESC LIMIT :limit", nativeQuery = true)
+	List<Transaction> findFirstPageByAccountId(@Param("accountId") Long accountId, @Param("limit") int limit);
+
+	@Query(value = "SELECT * FROM ("
+			+ "(SELECT * FROM transactions WHERE from_account_id = :accountId "
+			+ "AND (created_at, id) < (:createdAt, :id) "
+			+ "ORDER BY created_at DESC, id DESC LIMIT :limit) "
+			+ "UNION ALL "
+			+ "(SELECT * FROM transactions WHERE to_account_id = :accountId "
+			+ "AND (created_at, id) < (:createdAt, :id) "
+			+ "ORDER BY created_at DESC, id DESC LIMIT :limit)"
+			+ ") t ORDER BY t.created_at DESC, t.id DESC LIMIT :limit", nativeQuery = true)
+	List<Transaction> findPageByAccountIdBefore(
+			@Param("accountId") Long accountId,
+			@Param("createdAt") LocalDateTime createdAt,
+			@Param("id") Long id,
+			@Param("limit") int limit
+	);
+
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+	@Query(value = "SELECT * FROM ("
+			+ "SELECT * FROM transactions WHERE from_account_id = :accountId "
+			+ "UNION ALL "
+			+ "SELECT * FROM transactions WHERE to_account_id = :accountId"
+			+ ") t ORDER BY t.created_at DESC, t.id DESC", nativeQuery = true)
+	Stream<Transaction> streamByAccountId(@Param("accountId") Long accountId);
 }
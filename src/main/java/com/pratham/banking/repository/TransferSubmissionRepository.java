@@ -0,0 +1,50 @@
+package com.pratham.banking.repository;
+
+import com.pratham.banking.entity.TransferSubmission;
+import com.pratham.banking.entity.TransferSubmissionStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for TransferSubmission entity.
+ */
+public interface TransferSubmissionRepository extends JpaRepository<TransferSubmission, String> {
+
+    Optional<TransferSubmission> findByIdempotencyKey(String idempotencyKey);
+
+    @Query("SELECT s.username FROM TransferSubmission s WHERE s.id = :id")
+    Optional<String> findUsernameById(@Param("id") String id);
+
+    /**
+     * Returns the oldest pending submissions whose source account falls to {@code worker} out of
+     * {@code workers}, so that workers never pick up the same submission.
+     */
+    @Query("SELECT s FROM TransferSubmission s "
+            + "WHERE s.status = com.pratham.banking.entity.TransferSubmissionStatus.PENDING "
+            + "AND MOD(s.fromAccountId, :workers) = :worker "
+            + "ORDER BY s.createdAt")
+    List<TransferSubmission> findPending(@Param("workers") long workers,
+                                         @Param("worker") long worker,
+                                         Pageable pageable);
+
+    /**
+     * Moves a pending submission to its final state.
+     *
+     * @return {@code 1} if the submission was still pending, otherwise {@code 0}
+     */
+    @Modifying
+    @Query("UPDATE TransferSubmission s SET s.status = :status, s.failureReason = :failureReason, "
+            + "s.processedAt = :processedAt "
+            + "WHERE s.id = :id AND s.status = com.pratham.banking.entity.TransferSubmissionStatus.PENDING")
+    int finish(@Param("id") String id,
+               @Param("status") TransferSubmissionStatus status,
+               @Param("failureReason") String failureReason,
+               @Param("processedAt") LocalDateTime processedAt);
+}
@@ -2,7 +2,12 @@ package com.pratham.banking.repository;
 
 import com.pratham.banking.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 /**
@@ -11,4 +16,25 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUsername(String username);
+
+    /**
+     * Backs {@code isCurrentUserId} on cache misses; runs read-only so a configured replica serves it.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT u.username FROM User u WHERE u.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
+    /**
+     * Copies a user onto a database shard that does not hold it yet, so accounts placed there can
+     * reference their owner. The copy has no password; logins are always checked on the home shard.
+     *
+     * @return {@code 1} if the copy was inserted, {@code 0} if the shard already had the user
+     */
+    @Modifying
+    @Query(value = "INSERT INTO users (id, username, password, role, created_at) "
+            + "VALUES (:id, :username, '', :role, :createdAt) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertShardCopy(@Param("id") Long id,
+                        @Param("username") String username,
+                        @Param("role") String role,
+                        @Param("createdAt") LocalDateTime createdAt);
 }
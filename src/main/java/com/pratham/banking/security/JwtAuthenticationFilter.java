@@ -1,11 +1,15 @@
 package com.pratham.banking.security;
 
+import com.pratham.banking.service.BankingMetrics;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -19,10 +23,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final BankingMetrics bankingMetrics;
+    private final boolean statelessAuthentication;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService,
+                                   UserDetailsService userDetailsService,
+                                   BankingMetrics bankingMetrics,
+                                   @Value("${app.security.jwt.stateless:false}") boolean statelessAuthentication) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.bankingMetrics = bankingMetrics;
+        this.statelessAuthentication = statelessAuthentication;
     }
 
     @Override
@@ -42,29 +53,64 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String jwtToken = authHeader.substring(7);
-        String username;
+        Timer.Sample validation = bankingMetrics.startJwtValidation();
+        String outcome = authenticate(request, jwtToken);
+        bankingMetrics.stopJwtValidation(validation, outcome);
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Verifies the token and, if it is valid, sets the authenticated principal on the security context.
+     *
+     * @return the validation outcome used to tag the JWT validation timer
+     */
+    private String authenticate(HttpServletRequest request, String jwtToken) {
+        JwtTokenClaims claims;
 
         try {
-            username = jwtService.extractUsername(jwtToken);
+            claims = jwtService.parseToken(jwtToken);
         } catch (Exception exception) {
-            filterChain.doFilter(request, response);
-            return;
+            return "invalid";
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-            if (jwtService.isTokenValid(jwtToken, username)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+        String username = claims.getUsername();
+        if (username == null || claims.isExpired()) {
+            return "invalid";
         }
 
-        filterChain.doFilter(request, response);
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            return "already_authenticated";
+        }
+
+        UserDetails userDetails = resolveUserDetails(claims);
+
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities()
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+        return "authenticated";
+    }
+
+    /**
+     * Builds the principal from the verified token claims when stateless authentication is enabled,
+     * falling back to a database lookup for tokens that carry no role claim.
+     * <p>
+     * In stateless mode the role claim is trusted until the token expires: there is no revocation,
+     * so a role change or account removal only takes effect once the user's current tokens expire.
+     * Any endpoint added later to disable users, change roles or reset passwords has to add token
+     * revocation (or leave this mode off).
+     */
+    private UserDetails resolveUserDetails(JwtTokenClaims claims) {
+        if (statelessAuthentication && claims.getRole() != null) {
+            return User.withUsername(claims.getUsername())
+                    .password("")
+                    .roles(claims.getRole())
+                    .build();
+        }
+        return userDetailsService.loadUserByUsername(claims.getUsername());
     }
-}
\ No newline at end of file
+}
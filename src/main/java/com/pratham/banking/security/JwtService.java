@@ -1,6 +1,7 @@
 package com.pratham.banking.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -16,19 +17,26 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
 @Service
 public class JwtService {
 
     private static final long JWT_TOKEN_VALIDITY_MS = 60 * 60 * 1000;
+    private static final String ROLE_CLAIM = "role";
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    private final SecretKey signingKey;
+    private final JwtParser jwtParser;
+
+    public JwtService(@Value("${jwt.secret}") String jwtSecret) {
+        this.signingKey = buildSigningKey(jwtSecret);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
 
     public String generateToken(String username, String role) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("role", role);
+        claims.put(ROLE_CLAIM, role);
 
         Date issuedAt = new Date();
         Date expiration = new Date(issuedAt.getTime() + JWT_TOKEN_VALIDITY_MS);
@@ -38,41 +46,41 @@ public class JwtService {
                 .setSubject(username)
                 .setIssuedAt(issuedAt)
                 .setExpiration(expiration)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verifies the token signature and expiry in a single parse and returns its claims.
+     *
+     * @param token the compact JWT
+     * @return the verified token claims
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, tampered with or expired
+     */
+    public JwtTokenClaims parseToken(String token) {
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        return JwtTokenClaims.builder()
+                .username(claims.getSubject())
+                .role(claims.get(ROLE_CLAIM, String.class))
+                .issuedAt(claims.getIssuedAt())
+                .expiration(claims.getExpiration())
+                .build();
+    }
+
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parseToken(token).getUsername();
     }
 
     public boolean isTokenValid(String token, String username) {
-        String extractedUsername = extractUsername(token);
-        return extractedUsername.equals(username) && !isTokenExpired(token);
+        JwtTokenClaims claims = parseToken(token);
+        return claims.getUsername().equals(username) && !claims.isExpired();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parseToken(token).getExpiration();
     }
 
-    private SecretKey getSigningKey() {
+    private static SecretKey buildSigningKey(String jwtSecret) {
         String normalizedSecret = jwtSecret;
         try {
             Decoders.BASE64.decode(jwtSecret);
@@ -87,11 +95,11 @@ public class JwtService {
         return Keys.hmacShaKeyFor(keyBytes);
     }
 
-    private byte[] sha256(byte[] input) {
+    private static byte[] sha256(byte[] input) {
         try {
             return MessageDigest.getInstance("SHA-256").digest(input);
         } catch (NoSuchAlgorithmException exception) {
             throw new IllegalStateException("SHA-256 algorithm not available", exception);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.pratham.banking.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * Claims of a JWT whose signature and expiry have already been verified by {@link JwtService}.
+ */
+@Getter
+@AllArgsConstructor
+@Builder
+public class JwtTokenClaims {
+
+    private final String username;
+    private final String role;
+    private final Date issuedAt;
+    private final Date expiration;
+
+    public boolean isExpired() {
+        return expiration != null && expiration.before(new Date());
+    }
+}
@@ -0,0 +1,135 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.entity.AccountLockMode;
+import com.pratham.banking.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides per account whether balance updates take a row lock or rely on the account version.
+ *
+ * <p>An account uses its own {@link AccountLockMode}, or {@code app.account.locking.mode} when it has
+ * none. {@link AccountLockMode#ADAPTIVE} accounts start optimistic; once an account collects
+ * {@code conflict-threshold} version conflicts within {@code window-ms} it is treated as pessimistic for
+ * {@code cooldown-ms}, after which it goes back to optimistic. Contention is tracked per instance and
+ * only for accounts that recently had a conflict.
+ *
+ * <p>Account lock modes are cached in a bounded LRU map for {@code mode-cache-ttl-ms}. A mode changed
+ * through this instance applies here at once; other instances pick it up when their entry expires.
+ */
+@Component
+public class AccountLockingPolicy {
+
+    private final AccountRepository accountRepository;
+    private final AccountLockMode defaultMode;
+    private final int conflictThreshold;
+    private final long windowMs;
+    private final long cooldownMs;
+    private final long modeCacheTtlMs;
+    private final Map<Long, CachedLockMode> lockModes;
+    private final Map<Long, Contention> contention = new ConcurrentHashMap<>();
+
+    public AccountLockingPolicy(AccountRepository accountRepository,
+                                @Value("${app.account.locking.mode:PESSIMISTIC}") AccountLockMode defaultMode,
+                                @Value("${app.account.locking.adaptive.conflict-threshold:3}") int conflictThreshold,
+                                @Value("${app.account.locking.adaptive.window-ms:1000}") long windowMs,
+                                @Value("${app.account.locking.adaptive.cooldown-ms:30000}") long cooldownMs,
+                                @Value("${app.account.locking.mode-cache.ttl-ms:10000}") long modeCacheTtlMs,
+                                @Value("${app.account.locking.mode-cache.max-entries:100000}") int modeCacheMaxEntries) {
+        this.accountRepository = accountRepository;
+        this.defaultMode = defaultMode;
+        this.conflictThreshold = Math.max(1, conflictThreshold);
+        this.windowMs = windowMs;
+        this.cooldownMs = cooldownMs;
+        this.modeCacheTtlMs = modeCacheTtlMs;
+        this.lockModes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedLockMode> eldest) {
+                return size() > modeCacheMaxEntries;
+            }
+        });
+    }
+
+    /**
+     * Whether the next balance update on the account should read without a lock and check the version.
+     */
+    public boolean isOptimistic(Long accountId) {
+        return switch (resolveLockMode(accountId)) {
+            case PESSIMISTIC -> false;
+            case OPTIMISTIC -> true;
+            case ADAPTIVE -> !isContended(accountId);
+        };
+    }
+
+    /**
+     * Counts a version conflict on the account, switching an adaptive account to pessimistic locking
+     * once it crosses the threshold.
+     */
+    public void recordConflict(Long accountId) {
+        long now = System.currentTimeMillis();
+        contention.compute(accountId, (id, current) -> {
+            if (current == null || now - current.windowStart() > windowMs) {
+                long contendedUntil = current == null ? 0 : current.contendedUntil();
+                return escalate(new Contention(now, 1, contendedUntil), now);
+            }
+            return escalate(new Contention(current.windowStart(), current.conflicts() + 1, current.contendedUntil()), now);
+        });
+    }
+
+    /**
+     * Updates the cached lock mode after the account's {@code lock_mode} column changed.
+     */
+    public void setLockMode(Long accountId, AccountLockMode lockMode) {
+        cacheLockMode(accountId, lockMode == null ? defaultMode : lockMode);
+        contention.remove(accountId);
+    }
+
+    private Contention escalate(Contention current, long now) {
+        if (current.conflicts() < conflictThreshold) {
+            return current;
+        }
+        return new Contention(now, 0, now + cooldownMs);
+    }
+
+    private boolean isContended(Long accountId) {
+        Contention current = contention.get(accountId);
+        if (current == null) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        if (current.contendedUntil() > now) {
+            return true;
+        }
+        if (now - current.windowStart() > windowMs) {
+            contention.remove(accountId, current);
+        }
+        return false;
+    }
+
+    private AccountLockMode resolveLockMode(Long accountId) {
+        CachedLockMode cached = lockModes.get(accountId);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            return cached.lockMode();
+        }
+
+        AccountLockMode lockMode = accountRepository.findLockModeById(accountId).orElse(defaultMode);
+        cacheLockMode(accountId, lockMode);
+        return lockMode;
+    }
+
+    private void cacheLockMode(Long accountId, AccountLockMode lockMode) {
+        lockModes.put(accountId, new CachedLockMode(lockMode, System.currentTimeMillis() + modeCacheTtlMs));
+    }
+
+    private record CachedLockMode(AccountLockMode lockMode, long expiresAt) {
+    }
+
+    private record Contention(long windowStart, int conflicts, long contendedUntil) {
+    }
+}
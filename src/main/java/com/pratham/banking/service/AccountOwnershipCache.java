@@ -0,0 +1,51 @@
+package com.pratham.banking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of account-to-owner and user-to-username mappings used by authorization checks.
+ *
+ * <p>Both mappings are immutable once the account or user row exists, so cached entries never go
+ * stale. Only positive lookups are cached; unknown ids always fall through to the database.
+ */
+@Component
+public class AccountOwnershipCache {
+
+    private final Map<Long, String> accountOwners;
+    private final Map<Long, String> usernames;
+
+    public AccountOwnershipCache(@Value("${app.cache.ownership.max-entries:100000}") int maxEntries) {
+        this.accountOwners = boundedMap(maxEntries);
+        this.usernames = boundedMap(maxEntries);
+    }
+
+    public String getAccountOwner(Long accountId) {
+        return accountOwners.get(accountId);
+    }
+
+    public void putAccountOwner(Long accountId, String username) {
+        accountOwners.put(accountId, username);
+    }
+
+    public String getUsername(Long userId) {
+        return usernames.get(userId);
+    }
+
+    public void putUsername(Long userId, String username) {
+        usernames.put(userId, username);
+    }
+
+    private static <K, V> Map<K, V> boundedMap(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+}
@@ -1,26 +1,47 @@
 package com.pratham.banking.service;
 
+import com.pratham.banking.dto.AccountLockModeRequest;
 import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.dto.BatchTransferItemResponse;
+import com.pratham.banking.dto.BatchTransferRequest;
+import com.pratham.banking.dto.BatchTransferResponse;
 import com.pratham.banking.dto.CreateAccountRequest;
 import com.pratham.banking.dto.DepositRequest;
+import com.pratham.banking.dto.EnableShardingRequest;
 import com.pratham.banking.dto.TransactionResponse;
 import com.pratham.banking.dto.TransferRequest;
 import com.pratham.banking.dto.WithdrawRequest;
 import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.Money;
 import com.pratham.banking.entity.Transaction;
 import com.pratham.banking.entity.TransactionType;
 import com.pratham.banking.entity.User;
+import com.pratham.banking.exception.IdempotencyInProgressException;
 import com.pratham.banking.exception.InsufficientBalanceException;
+import com.pratham.banking.exception.InvalidAmountException;
 import com.pratham.banking.exception.InvalidTransferException;
+import com.pratham.banking.exception.LockContentionException;
 import com.pratham.banking.exception.ResourceNotFoundException;
 import com.pratham.banking.repository.AccountRepository;
 import com.pratham.banking.repository.TransactionRepository;
 import com.pratham.banking.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
 
 /**
  * Service class for handling account-related business logic.
@@ -28,209 +49,756 @@ import java.util.List;
 @Service
 public class AccountService {
 
+    private static final String DEBIT_IF_SUFFICIENT_SQL = "UPDATE accounts SET balance = balance - ?, version = version + 1 "
+            + "WHERE id = ? AND balance >= ?";
+    private static final String[] DEBITED_ACCOUNT_COLUMNS = {"user_id", "balance", "created_at"};
+
     private final AccountRepository accountRepository;
     private final UserRepository userRepository;
         private final TransactionRepository transactionRepository;
         private final IdempotencyService idempotencyService;
+        private final AccountOwnershipCache accountOwnershipCache;
+        private final BalanceShardService balanceShardService;
+        private final TransferEngine transferEngine;
+        private final BankingMetrics bankingMetrics;
+        private final LockRetryExecutor lockRetryExecutor;
+        private final AccountLockingPolicy accountLockingPolicy;
+        private final InMemoryBalanceEngine inMemoryBalanceEngine;
+        private final DatabaseShardRouter databaseShardRouter;
+        private final CrossShardTransferService crossShardTransferService;
+        private final ShardStepFence shardStepFence;
+        private final JdbcTemplate jdbcTemplate;
+        private final EntityManager entityManager;
 
         public AccountService(
                         AccountRepository accountRepository,
                         UserRepository userRepository,
                         TransactionRepository transactionRepository,
-                        IdempotencyService idempotencyService
+                        IdempotencyService idempotencyService,
+                        AccountOwnershipCache accountOwnershipCache,
+                        BalanceShardService balanceShardService,
+                        @Value("${app.transfer.engine:LOCKING}") TransferEngine transferEngine,
+                        BankingMetrics bankingMetrics,
+                        LockRetryExecutor lockRetryExecutor,
+                        AccountLockingPolicy accountLockingPolicy,
+                        InMemoryBalanceEngine inMemoryBalanceEngine,
+                        DatabaseShardRouter databaseShardRouter,
+                        CrossShardTransferService crossShardTransferService,
+                        ShardStepFence shardStepFence,
+                        JdbcTemplate jdbcTemplate,
+                        EntityManager entityManager
         ) {
         this.accountRepository = accountRepository;
         this.userRepository = userRepository;
                 this.transactionRepository = transactionRepository;
                 this.idempotencyService = idempotencyService;
+                this.accountOwnershipCache = accountOwnershipCache;
+                this.balanceShardService = balanceShardService;
+                this.transferEngine = transferEngine;
+                this.bankingMetrics = bankingMetrics;
+                this.lockRetryExecutor = lockRetryExecutor;
+                this.accountLockingPolicy = accountLockingPolicy;
+                this.inMemoryBalanceEngine = inMemoryBalanceEngine;
+                this.databaseShardRouter = databaseShardRouter;
+                this.crossShardTransferService = crossShardTransferService;
+                this.shardStepFence = shardStepFence;
+                this.jdbcTemplate = jdbcTemplate;
+                this.entityManager = entityManager;
     }
 
+    /**
+     * Creates the account on the user's database shard. A user is copied onto a shard other than the
+     * home shard the first time an account of theirs is placed there. The shard step is fenced by the
+     * idempotency key, so a retry after a failed completion returns the account created the first time.
+     */
     @Transactional
     public AccountResponse createAccount(CreateAccountRequest request) {
         User user = userRepository.findById(request.getUserId())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        Account account = Account.builder()
-                .user(user)
-                .balance(BigDecimal.ZERO)
-                .build();
-
-        Account savedAccount = accountRepository.save(account);
-
-        return AccountResponse.builder()
-                .id(savedAccount.getId())
-                .userId(savedAccount.getUser().getId())
-                .balance(savedAccount.getBalance())
-                .createdAt(savedAccount.getCreatedAt())
-                .build();
+        int shard = databaseShardRouter.shardForNewAccount(user.getId());
+        AccountResponse accountResponse = shardStepFence.executeOnce(shard, "create-account", AccountResponse.class, () -> {
+            if (shard != DatabaseShardRouter.HOME_SHARD) {
+                userRepository.insertShardCopy(user.getId(), user.getUsername(), user.getRole().name(), user.getCreatedAt());
+            }
+
+            Account account = Account.builder()
+                    .user(user)
+                    .balance(0)
+                    .build();
+            Account savedAccount = accountRepository.save(account);
+            return AccountResponse.builder()
+                    .id(savedAccount.getId())
+                    .userId(savedAccount.getUser().getId())
+                    .balance(savedAccount.getBalance())
+                    .createdAt(savedAccount.getCreatedAt())
+                    .build();
+        });
+        accountOwnershipCache.putAccountOwner(accountResponse.getId(), user.getUsername());
+
+        return accountResponse;
     }
 
     public AccountResponse getAccountById(Long accountId) {
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+        if (inMemoryBalanceEngine.isEnabled()) {
+            return mapToAccountResponse(inMemoryBalanceEngine.getAccount(accountId));
+        }
 
-        return AccountResponse.builder()
-                .id(account.getId())
-                .userId(account.getUser().getId())
-                .balance(account.getBalance())
-                .createdAt(account.getCreatedAt())
-                .build();
+        return databaseShardRouter.read(databaseShardRouter.shardOf(accountId), () -> {
+            Account account = accountRepository.findById(accountId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+
+            return mapToAccountResponse(account);
+        });
     }
 
-    @Transactional
     public AccountResponse deposit(Long accountId, DepositRequest request) {
-        Account account = accountRepository.findByIdForUpdate(accountId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
-
-        BigDecimal updatedBalance = account.getBalance().add(request.getAmount());
-        account.setBalance(updatedBalance);
+        if (inMemoryBalanceEngine.isEnabled()) {
+            return bankingMetrics.recordOperation("deposit", () -> mapToAccountResponse(
+                    inMemoryBalanceEngine.deposit(accountId, request.getAmount())
+            ));
+        }
 
-        Account savedAccount = accountRepository.save(account);
+        int shard = databaseShardRouter.shardOf(accountId);
+        return bankingMetrics.recordOperation("deposit", () -> shardStepFence.executeOnce(shard, "deposit", AccountResponse.class, () -> {
+            Account savedAccount = creditLocked(accountId, request.getAmount());
 
-        Transaction transaction = Transaction.builder()
-                .fromAccountId(null)
-                .toAccountId(accountId)
-                .amount(request.getAmount())
-                .type(TransactionType.DEPOSIT)
-                .build();
-        transactionRepository.save(transaction);
+            Transaction transaction = Transaction.builder()
+                    .fromAccountId(null)
+                    .toAccountId(accountId)
+                    .amount(request.getAmount())
+                    .type(TransactionType.DEPOSIT)
+                    .build();
+            transactionRepository.save(transaction);
 
-        return mapToAccountResponse(savedAccount);
+            return mapToAccountResponse(savedAccount);
+        }));
     }
 
-    @Transactional
     public AccountResponse withdraw(Long accountId, WithdrawRequest request) {
-        Account account = accountRepository.findByIdForUpdate(accountId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
-
-        BigDecimal amount = request.getAmount();
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (request.getAmount() == null || request.getAmount() <= 0) {
             throw new IllegalArgumentException("Amount must be positive");
         }
+        long amount = request.getAmount();
 
-        if (account.getBalance().compareTo(amount) < 0) {
-            throw new IllegalStateException("Insufficient balance");
+        if (inMemoryBalanceEngine.isEnabled()) {
+            return bankingMetrics.recordOperation("withdraw", () -> mapToAccountResponse(
+                    inMemoryBalanceEngine.withdraw(accountId, amount)
+            ));
         }
 
-        account.setBalance(account.getBalance().subtract(amount));
-        Account savedAccount = accountRepository.save(account);
+        int shard = databaseShardRouter.shardOf(accountId);
+        return bankingMetrics.recordOperation("withdraw", () -> shardStepFence.executeOnce(shard, "withdraw", AccountResponse.class, () -> {
 
-        Transaction transaction = Transaction.builder()
-                .fromAccountId(accountId)
-                .toAccountId(null)
-                .amount(amount)
-                .type(TransactionType.WITHDRAW)
-                .build();
-        transactionRepository.save(transaction);
+            Account savedAccount = debitLocked(accountId, amount);
 
-        return mapToAccountResponse(savedAccount);
+            Transaction transaction = Transaction.builder()
+                    .fromAccountId(accountId)
+                    .toAccountId(null)
+                    .amount(amount)
+                    .type(TransactionType.WITHDRAW)
+                    .build();
+            transactionRepository.save(transaction);
+
+            return mapToAccountResponse(savedAccount);
+        }));
     }
 
-        @Transactional
-        public AccountResponse transfer(String idempotencyKey, String requestHash, TransferRequest request) {
-        return idempotencyService.execute(
-                idempotencyKey,
-                requestHash,
-                () -> transferInternal(request)
-        );
+    public AccountResponse enableSharding(Long accountId, EnableShardingRequest request) {
+        return databaseShardRouter.write(databaseShardRouter.shardOf(accountId), () -> {
+            Account account = balanceShardService.enableSharding(accountId, request.getShardCount());
+            return mapToAccountResponse(account);
+        });
+    }
+
+    public AccountResponse setLockMode(Long accountId, AccountLockModeRequest request) {
+        return databaseShardRouter.write(databaseShardRouter.shardOf(accountId), () -> {
+            Account account = accountRepository.findById(accountId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+
+            account.setLockMode(request.getLockMode());
+            Account savedAccount = accountRepository.save(account);
+            accountLockingPolicy.setLockMode(accountId, request.getLockMode());
+            return mapToAccountResponse(savedAccount);
+        });
     }
 
-    @Transactional
     public AccountResponse transfer(TransferRequest request) {
-        return transferInternal(request);
+        if (inMemoryBalanceEngine.isEnabled()) {
+            return bankingMetrics.recordOperation("transfer", () -> {
+                validateTransfer(request);
+                return mapToAccountResponse(inMemoryBalanceEngine.transfer(
+                        request.getFromAccountId(),
+                        request.getToAccountId(),
+                        request.getAmount()
+                ));
+            });
+        }
+
+        return bankingMetrics.recordOperation("transfer", () -> transferOnShards(request, "transfer"));
+    }
+
+    /**
+     * Runs a same-shard transfer on the locked path of its shard and hands transfers between database
+     * shards to {@link CrossShardTransferService}. Without database shards every transfer is same-shard.
+     * {@code step} names the transfer for {@link ShardStepFence} within the current idempotent request.
+     */
+    private AccountResponse transferOnShards(TransferRequest request, String step) {
+        validateTransfer(request);
+
+        int sourceShard = databaseShardRouter.shardOf(request.getFromAccountId());
+        if (sourceShard != databaseShardRouter.shardOf(request.getToAccountId())) {
+            return crossShardTransferService.transfer(
+                    request.getFromAccountId(),
+                    request.getToAccountId(),
+                    request.getAmount(),
+                    step
+            );
+        }
+        return shardStepFence.executeOnce(sourceShard, step, AccountResponse.class, () -> transferInternal(request));
     }
 
     private AccountResponse transferInternal(TransferRequest request) {
         Long fromAccountId = request.getFromAccountId();
         Long toAccountId = request.getToAccountId();
-        BigDecimal amount = request.getAmount();
+        long amount = request.getAmount();
+
+        AccountResponse sourceAccount = transferEngine == TransferEngine.CONDITIONAL_UPDATE
+                ? applyConditionalTransfer(fromAccountId, toAccountId, amount)
+                : mapToAccountResponse(applyLockedTransfer(fromAccountId, toAccountId, amount));
+
+        Transaction transaction = Transaction.builder()
+                .fromAccountId(fromAccountId)
+                .toAccountId(toAccountId)
+                .amount(amount)
+                .type(TransactionType.TRANSFER)
+                .build();
+        transactionRepository.save(transaction);
 
-        if (fromAccountId == null || toAccountId == null) {
+        return sourceAccount;
+    }
+
+    private void validateTransfer(TransferRequest request) {
+        if (request.getFromAccountId() == null || request.getToAccountId() == null) {
                         throw new InvalidTransferException("Account IDs are required");
         }
 
-        if (fromAccountId.equals(toAccountId)) {
+        if (request.getFromAccountId().equals(request.getToAccountId())) {
                         throw new InvalidTransferException("Source and destination accounts must be different");
         }
 
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (request.getAmount() == null || request.getAmount() <= 0) {
                         throw new InvalidTransferException("Amount must be positive");
         }
+    }
 
-        Long firstLockId = Math.min(fromAccountId, toAccountId);
-        Long secondLockId = Math.max(fromAccountId, toAccountId);
+    /**
+     * Applies the batch once per idempotency key, which is scoped to {@code username} like the keys of
+     * the other mutating endpoints.
+     */
+    public BatchTransferResponse transferBatch(String username,
+                                               String idempotencyKey,
+                                               String requestHash,
+                                               BatchTransferRequest request) {
+        return idempotencyService.execute(
+                username + ":" + idempotencyKey,
+                requestHash,
+                () -> bankingMetrics.recordOperation("transfer_batch", () -> {
+                    if (inMemoryBalanceEngine.isEnabled()) {
+                        return transferBatchInMemory(request.getTransfers());
+                    }
+                    Integer shard = commonShard(request.getTransfers());
+                    return shard != null
+                            ? shardStepFence.executeOnce(shard, "transfer-batch", BatchTransferResponse.class,
+                                    () -> transferBatchInternal(request.getTransfers()))
+                            : transferBatchAcrossShards(request.getTransfers());
+                })
+        );
+    }
 
-        Account firstLockedAccount = accountRepository.findByIdForUpdate(firstLockId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
-        Account secondLockedAccount = accountRepository.findByIdForUpdate(secondLockId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+    /**
+     * Returns the database shard holding every account of the batch, or {@code null} if the accounts
+     * are spread over several shards. Items with missing or unknown ids are left to validation.
+     */
+    private Integer commonShard(List<TransferRequest> transfers) {
+        Integer shard = null;
+        for (TransferRequest transfer : transfers) {
+            for (Long accountId : new Long[] {transfer.getFromAccountId(), transfer.getToAccountId()}) {
+                if (!databaseShardRouter.hasShard(accountId)) {
+                    continue;
+                }
+                int accountShard = databaseShardRouter.shardOf(accountId);
+                if (shard == null) {
+                    shard = accountShard;
+                } else if (shard != accountShard) {
+                    return null;
+                }
+            }
+        }
+        return shard == null ? DatabaseShardRouter.HOME_SHARD : shard;
+    }
 
-        Account sourceAccount = fromAccountId.equals(firstLockedAccount.getId())
-                ? firstLockedAccount
-                : secondLockedAccount;
-        Account destinationAccount = toAccountId.equals(firstLockedAccount.getId())
-                ? firstLockedAccount
-                : secondLockedAccount;
+    /**
+     * Applies a batch spanning several database shards one transfer at a time, each committing on its
+     * own. An item that fails, including on lock contention, is reported without affecting the others.
+     */
+    private BatchTransferResponse transferBatchAcrossShards(List<TransferRequest> transfers) {
+        List<TransferOutcome> outcomes = new ArrayList<>(transfers.size());
+        for (int index = 0; index < transfers.size(); index++) {
+            try {
+                outcomes.add(TransferOutcome.applied(transferOnShards(transfers.get(index), "transfer-" + index)));
+            } catch (InvalidTransferException | InvalidAmountException | InsufficientBalanceException
+                     | ResourceNotFoundException | LockContentionException ex) {
+                outcomes.add(TransferOutcome.rejected(ex));
+            }
+        }
 
-        if (sourceAccount.getBalance().compareTo(amount) < 0) {
-                        throw new InsufficientBalanceException("Insufficient balance");
+        return toBatchResponse(outcomes);
+    }
+
+    /**
+     * Submits every valid transfer of the batch to the in-memory engine before waiting for any of them,
+     * so the lanes can apply the batch in parallel. Transfers from the same account keep their order.
+     */
+    private BatchTransferResponse transferBatchInMemory(List<TransferRequest> transfers) {
+        List<CompletableFuture<BalanceSnapshot>> submitted = new ArrayList<>(transfers.size());
+        for (int index = 0; index < transfers.size(); index++) {
+            TransferRequest transfer = transfers.get(index);
+            CompletableFuture<BalanceSnapshot> result;
+            try {
+                validateTransfer(transfer);
+                result = inMemoryBalanceEngine.submitTransfer(
+                        transfer.getFromAccountId(),
+                        transfer.getToAccountId(),
+                        transfer.getAmount(),
+                        "transfer-" + index
+                );
+            } catch (InvalidTransferException | IllegalArgumentException ex) {
+                result = CompletableFuture.failedFuture(ex);
+            }
+            submitted.add(result);
         }
 
-        sourceAccount.setBalance(sourceAccount.getBalance().subtract(amount));
-        destinationAccount.setBalance(destinationAccount.getBalance().add(amount));
+        List<TransferOutcome> outcomes = new ArrayList<>(submitted.size());
+        for (CompletableFuture<BalanceSnapshot> result : submitted) {
+            try {
+                outcomes.add(TransferOutcome.applied(mapToAccountResponse(inMemoryBalanceEngine.await(result))));
+            } catch (InvalidTransferException | InvalidAmountException | IllegalArgumentException
+                     | InsufficientBalanceException | ResourceNotFoundException ex) {
+                outcomes.add(TransferOutcome.rejected(ex));
+            }
+        }
 
-        Account savedSourceAccount = accountRepository.save(sourceAccount);
-        accountRepository.save(destinationAccount);
+        return toBatchResponse(outcomes);
+    }
 
-        Transaction transaction = Transaction.builder()
-                .fromAccountId(fromAccountId)
-                .toAccountId(toAccountId)
-                .amount(amount)
-                .type(TransactionType.TRANSFER)
+    /**
+     * Applies every transfer of the batch inside one transaction; see {@link #applyTransfers}.
+     */
+    private BatchTransferResponse transferBatchInternal(List<TransferRequest> transfers) {
+        return toBatchResponse(applyTransfers(transfers, null));
+    }
+
+    /**
+     * Reports the outcome of every batch item, in request order.
+     */
+    private static BatchTransferResponse toBatchResponse(List<TransferOutcome> outcomes) {
+        List<BatchTransferItemResponse> results = new ArrayList<>(outcomes.size());
+        int succeeded = 0;
+        for (int index = 0; index < outcomes.size(); index++) {
+            TransferOutcome outcome = outcomes.get(index);
+            results.add(BatchTransferItemResponse.builder()
+                    .index(index)
+                    .success(outcome.isApplied())
+                    .message(outcome.isApplied() ? "Transfer successful" : outcome.failure().getMessage())
+                    .account(outcome.account())
+                    .build());
+            if (outcome.isApplied()) {
+                succeeded++;
+            }
+        }
+
+        return BatchTransferResponse.builder()
+                .succeeded(succeeded)
+                .failed(outcomes.size() - succeeded)
+                .results(results)
                 .build();
-        transactionRepository.save(transaction);
+    }
 
-        return mapToAccountResponse(savedSourceAccount);
+    /**
+     * Applies a group of unrelated transfers queued by {@link TransferPipeline} or
+     * {@link AsyncTransferService} in one transaction, retried as a whole on lock conflicts. Each
+     * transfer's recorder runs inside the transaction right after the transfer is applied; a recorder
+     * throwing {@link IdempotencyInProgressException} undoes its transfer without affecting the others.
+     *
+     * @return one outcome per transfer, in order
+     */
+    public List<TransferOutcome> transferGroup(List<TransferRequest> transfers,
+                                               List<UnaryOperator<AccountResponse>> recorders) {
+        return lockRetryExecutor.execute(() -> applyTransfers(transfers, recorders));
     }
 
-    @Transactional(readOnly = true)
-    public List<TransactionResponse> getTransactionsByAccountId(Long accountId) {
-        accountRepository.findById(accountId)
+    /**
+     * Applies the transfers inside the current transaction. All involved accounts are locked once, in
+     * ascending id order, before any balance changes; transfers that fail validation or lack funds are
+     * rejected individually and do not roll back the rest. Transaction rows are written together at the
+     * end so they can go out as one JDBC batch.
+     *
+     * @param recorders per transfer, called with the source account once the transfer is applied, or
+     *                  {@code null}
+     */
+    private List<TransferOutcome> applyTransfers(List<TransferRequest> transfers,
+                                                 List<UnaryOperator<AccountResponse>> recorders) {
+        TreeSet<Long> accountIds = new TreeSet<>();
+        Map<Long, Long> debitTotals = new HashMap<>();
+        for (TransferRequest transfer : transfers) {
+            if (transfer.getFromAccountId() != null && transfer.getToAccountId() != null && transfer.getAmount() != null) {
+                accountIds.add(transfer.getFromAccountId());
+                accountIds.add(transfer.getToAccountId());
+                debitTotals.merge(transfer.getFromAccountId(), transfer.getAmount(), Money::add);
+            }
+        }
+
+        Map<Long, Account> lockedAccounts = lockAccountsInOrder(accountIds, debitTotals);
+
+        List<TransferOutcome> outcomes = new ArrayList<>(transfers.size());
+        List<Transaction> transactions = new ArrayList<>(transfers.size());
+
+        for (int index = 0; index < transfers.size(); index++) {
+            TransferRequest transfer = transfers.get(index);
+            try {
+                validateTransfer(transfer);
+
+                Account sourceAccount = lockedAccounts.get(transfer.getFromAccountId());
+                Account destinationAccount = lockedAccounts.get(transfer.getToAccountId());
+                if (sourceAccount == null || destinationAccount == null) {
+                    throw new ResourceNotFoundException("Account not found");
+                }
+                long amount = transfer.getAmount();
+                if (sourceAccount.getBalance() < amount) {
+                    throw new InsufficientBalanceException("Insufficient balance");
+                }
+
+                long destinationBalance = Money.add(destinationAccount.getBalance(), amount);
+                sourceAccount.setBalance(Money.subtract(sourceAccount.getBalance(), amount));
+                destinationAccount.setBalance(destinationBalance);
+                AccountResponse sourceResponse = mapToAccountResponse(sourceAccount);
+
+                if (recorders != null) {
+                    try {
+                        recorders.get(index).apply(sourceResponse);
+                    } catch (IdempotencyInProgressException ex) {
+                        sourceAccount.setBalance(Money.add(sourceAccount.getBalance(), amount));
+                        destinationAccount.setBalance(Money.subtract(destinationAccount.getBalance(), amount));
+                        throw ex;
+                    }
+                }
+
+                transactions.add(Transaction.builder()
+                        .fromAccountId(sourceAccount.getId())
+                        .toAccountId(destinationAccount.getId())
+                        .amount(amount)
+                        .type(TransactionType.TRANSFER)
+                        .build());
+                outcomes.add(TransferOutcome.applied(sourceResponse));
+            } catch (InvalidTransferException | InvalidAmountException | InsufficientBalanceException
+                     | ResourceNotFoundException | IdempotencyInProgressException ex) {
+                outcomes.add(TransferOutcome.rejected(ex));
+            }
+        }
+
+        transactionRepository.saveAll(transactions);
+        return outcomes;
+    }
+
+    /**
+     * Locks the given accounts in ascending id order with as few round trips as possible. A sharded
+     * source account has its shards locked (and borrowed from) right after its own row, before any
+     * higher account id, so the lock order stays the same as in {@link #applyLockedTransfer}.
+     */
+    private Map<Long, Account> lockAccountsInOrder(TreeSet<Long> accountIds, Map<Long, Long> debitTotals) {
+        Map<Long, Account> lockedAccounts = new HashMap<>();
+        List<Long> chunk = new ArrayList<>();
+
+        for (Long accountId : accountIds) {
+            chunk.add(accountId);
+            if (debitTotals.containsKey(accountId) && balanceShardService.isSharded(accountId)) {
+                lockChunk(chunk, lockedAccounts);
+                Account shardedAccount = lockedAccounts.get(accountId);
+                if (shardedAccount != null) {
+                    balanceShardService.borrow(shardedAccount, debitTotals.get(accountId));
+                }
+                chunk.clear();
+            }
+        }
+        lockChunk(chunk, lockedAccounts);
+
+        return lockedAccounts;
+    }
+
+    private void lockChunk(List<Long> accountIds, Map<Long, Account> lockedAccounts) {
+        if (accountIds.isEmpty()) {
+            return;
+        }
+        List<Account> accounts = bankingMetrics.recordLockWait(
+                BankingMetrics.LOCK_ACCOUNT,
+                () -> accountRepository.findAllByIdInForUpdate(accountIds)
+        );
+        for (Account account : accounts) {
+            lockedAccounts.put(account.getId(), account);
+        }
+    }
+
+    /**
+     * Applies the transfer by locking each side in ascending account id order. Each side takes the
+     * account row lock (and, for a sharded account, its shard locks) before moving to the next side.
+     * Optimistically locked sides are read without a lock and written with a version check instead.
+     */
+    private Account applyLockedTransfer(Long fromAccountId, Long toAccountId, long amount) {
+        Account sourceAccount;
+        if (fromAccountId < toAccountId) {
+            sourceAccount = debitLocked(fromAccountId, amount);
+            creditLocked(toAccountId, amount);
+        } else {
+            creditLocked(toAccountId, amount);
+            sourceAccount = debitLocked(fromAccountId, amount);
+        }
+        return sourceAccount;
+    }
+
+    private Account debitLocked(Long accountId, long amount) {
+        if (useOptimisticLocking(accountId)) {
+            return flushVersioned(debit(findAccount(accountId), amount));
+        }
+
+        Account account = lockAccount(accountId);
+        return debit(account, amount);
+    }
+
+    /**
+     * Sharded accounts always lock their row, since borrowing from shards needs the row lock.
+     */
+    private boolean useOptimisticLocking(Long accountId) {
+        return !balanceShardService.isSharded(accountId) && accountLockingPolicy.isOptimistic(accountId);
+    }
+
+    private Account findAccount(Long accountId) {
+        return accountRepository.findById(accountId)
                 .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+    }
 
-        List<Transaction> transactions = transactionRepository.findByAccountId(accountId);
-        return transactions.stream()
-                .map(this::mapToTransactionResponse)
-                .toList();
+    /**
+     * Flushes an account read without a lock, so a version conflict surfaces here, is counted against
+     * the account and the operation is retried by {@link LockRetryExecutor}.
+     */
+    private Account flushVersioned(Account account) {
+        try {
+            return accountRepository.saveAndFlush(account);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            accountLockingPolicy.recordConflict(account.getId());
+            throw ex;
+        }
     }
 
-        @Transactional(readOnly = true)
+    private Account lockAccount(Long accountId) {
+        return bankingMetrics.recordLockWait(BankingMetrics.LOCK_ACCOUNT, () -> accountRepository.findByIdForUpdate(accountId))
+                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+    }
+
+    private Account debit(Account lockedAccount, long amount) {
+        balanceShardService.borrow(lockedAccount, amount);
+        if (lockedAccount.getBalance() < amount) {
+                        throw new InsufficientBalanceException("Insufficient balance");
+        }
+
+        lockedAccount.setBalance(Money.subtract(lockedAccount.getBalance(), amount));
+        return accountRepository.save(lockedAccount);
+    }
+
+    /**
+     * Credits the account, spreading the credit onto a balance shard for sharded hot accounts
+     * so that only the shard row is locked.
+     */
+    private Account creditLocked(Long accountId, long amount) {
+        if (balanceShardService.creditIfSharded(accountId, amount)) {
+            return accountRepository.getReferenceById(accountId);
+        }
+
+        if (useOptimisticLocking(accountId)) {
+            Account account = findAccount(accountId);
+            account.setBalance(Money.add(account.getBalance(), amount));
+            return flushVersioned(account);
+        }
+
+        Account account = lockAccount(accountId);
+        account.setBalance(Money.add(account.getBalance(), amount));
+        return accountRepository.save(account);
+    }
+
+    /**
+     * Applies the transfer with two single-row UPDATE statements instead of locking reads.
+     * The statements run in ascending account id order so that row locks are still acquired
+     * in the same order as {@link #applyLockedTransfer}, keeping concurrent transfers deadlock-free.
+     *
+     * @return the source account as left by its debit
+     */
+    private AccountResponse applyConditionalTransfer(Long fromAccountId, Long toAccountId, long amount) {
+        if (fromAccountId < toAccountId) {
+            AccountResponse sourceAccount = debitIfSufficient(fromAccountId, amount);
+            credit(toAccountId, amount);
+            return sourceAccount;
+        }
+
+        credit(toAccountId, amount);
+        return debitIfSufficient(fromAccountId, amount);
+    }
+
+    private AccountResponse debitIfSufficient(Long accountId, long amount) {
+        BalanceSnapshot debited = bankingMetrics.recordLockWait(
+                BankingMetrics.LOCK_ACCOUNT,
+                () -> debitRowIfSufficient(accountId, amount)
+        );
+        if (debited != null) {
+            return AccountResponse.builder()
+                    .id(accountId)
+                    .userId(debited.userId())
+                    .balance(balanceShardService.totalBalance(accountId, debited.balance()))
+                    .createdAt(debited.createdAt())
+                    .build();
+        }
+
+        Account account = lockAccount(accountId);
+        if (!account.isSharded()) {
+            throw new InsufficientBalanceException("Insufficient balance");
+        }
+        return mapToAccountResponse(debit(account, amount));
+    }
+
+    /**
+     * Debits the account row if it covers the amount, getting the updated row back from the same
+     * statement. The returned columns are requested as generated keys, which the PostgreSQL driver sends
+     * as a {@code RETURNING} clause. Like the bulk updates in {@link AccountRepository}, pending changes
+     * are flushed first and the persistence context is cleared afterwards, so no managed account is left
+     * holding the old balance.
+     *
+     * @return the debited account, or {@code null} if the row is missing or its balance is short
+     */
+    private BalanceSnapshot debitRowIfSufficient(Long accountId, long amount) {
+        entityManager.flush();
+        BalanceSnapshot debited = jdbcTemplate.execute(
+                (PreparedStatementCreator) connection -> connection.prepareStatement(DEBIT_IF_SUFFICIENT_SQL, DEBITED_ACCOUNT_COLUMNS),
+                statement -> {
+                    statement.setBigDecimal(1, Money.toDecimal(amount));
+                    statement.setLong(2, accountId);
+                    statement.setBigDecimal(3, Money.toDecimal(amount));
+                    if (statement.executeUpdate() == 0) {
+                        return null;
+                    }
+                    try (ResultSet row = statement.getGeneratedKeys()) {
+                        return row.next()
+                                ? new BalanceSnapshot(
+                                        accountId,
+                                        row.getLong("user_id"),
+                                        Money.fromDecimal(row.getBigDecimal("balance")),
+                                        row.getObject("created_at", LocalDateTime.class))
+                                : null;
+                    }
+                });
+        entityManager.clear();
+        return debited;
+    }
+
+    private void credit(Long accountId, long amount) {
+        if (balanceShardService.creditIfSharded(accountId, amount)) {
+            return;
+        }
+        int credited = bankingMetrics.recordLockWait(
+                BankingMetrics.LOCK_ACCOUNT,
+                () -> accountRepository.credit(accountId, amount)
+        );
+        if (credited == 0) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+    }
+
+    public List<TransactionResponse> getTransactionsByAccountId(Long accountId) {
+        return databaseShardRouter.read(databaseShardRouter.shardOf(accountId), () -> {
+            accountRepository.findById(accountId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+
+            List<Transaction> transactions = transactionRepository.findByAccountId(accountId);
+            return transactions.stream()
+                    .map(this::mapToTransactionResponse)
+                    .toList();
+        });
+    }
+
+        /**
+         * Checks account ownership for method security. Served from {@link AccountOwnershipCache}
+         * when possible, so repeated checks on the same account issue no SQL and open no transaction.
+         */
         public boolean isAccountOwner(Long accountId, String username) {
-                if (accountId == null || username == null || username.isBlank()) {
+                if (accountId == null || username == null || username.isBlank()
+                                || !databaseShardRouter.hasShard(accountId)) {
                         return false;
                 }
-                return accountRepository.existsByIdAndUser_Username(accountId, username);
+                String owner = accountOwnershipCache.getAccountOwner(accountId);
+                if (owner == null) {
+                        owner = databaseShardRouter.read(
+                                        databaseShardRouter.shardOf(accountId),
+                                        () -> accountRepository.findOwnerUsernameById(accountId)
+                        ).orElse(null);
+                        if (owner == null) {
+                                return false;
+                        }
+                        accountOwnershipCache.putAccountOwner(accountId, owner);
+                }
+                return owner.equals(username);
         }
 
-        @Transactional(readOnly = true)
+    public boolean isOwnerOfAllSourceAccounts(List<TransferRequest> transfers, String username) {
+        if (transfers == null || transfers.isEmpty()) {
+            return false;
+        }
+        return transfers.stream()
+                .map(TransferRequest::getFromAccountId)
+                .distinct()
+                .allMatch(accountId -> isAccountOwner(accountId, username));
+    }
+
         public boolean isCurrentUserId(Long userId, String username) {
                 if (userId == null || username == null || username.isBlank()) {
                         return false;
                 }
-                return userRepository.findById(userId)
-                                .map(user -> user.getUsername().equals(username))
-                                .orElse(false);
+                String cachedUsername = accountOwnershipCache.getUsername(userId);
+                if (cachedUsername == null) {
+                        cachedUsername = userRepository.findUsernameById(userId).orElse(null);
+                        if (cachedUsername == null) {
+                                return false;
+                        }
+                        accountOwnershipCache.putUsername(userId, cachedUsername);
+                }
+                return cachedUsername.equals(username);
         }
 
     private AccountResponse mapToAccountResponse(Account account) {
         return AccountResponse.builder()
                 .id(account.getId())
                 .userId(account.getUser().getId())
-                .balance(account.getBalance())
+                .balance(balanceShardService.totalBalance(account))
                 .createdAt(account.getCreatedAt())
                 .build();
     }
 
+    private AccountResponse mapToAccountResponse(BalanceSnapshot account) {
+        return AccountResponse.builder()
+                .id(account.accountId())
+                .userId(account.userId())
+                .balance(account.balance())
+                .createdAt(account.createdAt())
+                .build();
+    }
+
         private TransactionResponse mapToTransactionResponse(Transaction transaction) {
                 return TransactionResponse.builder()
                                 .id(transaction.getId())
@@ -0,0 +1,365 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.dto.TransferRequest;
+import com.pratham.banking.dto.TransferSubmissionResponse;
+import com.pratham.banking.entity.TransferSubmission;
+import com.pratham.banking.entity.TransferSubmissionStatus;
+import com.pratham.banking.exception.IdempotencyConflictException;
+import com.pratham.banking.exception.IdempotencyInProgressException;
+import com.pratham.banking.exception.LockContentionException;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import com.pratham.banking.repository.TransferSubmissionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Accepts transfers for background processing, enabled with {@code app.transfer.async.enabled=true}.
+ *
+ * <p>{@link #submit} only inserts a {@link TransferSubmission} row, so the request returns without
+ * touching the account rows and is not slowed down by lock contention on them. The
+ * {@code app.transfer.async.workers} worker threads each own the submissions whose source account id
+ * falls to them, so one hot source account is only ever locked by one worker. A worker reads up to
+ * {@code batch-size} pending submissions and applies them with {@link AccountService#transferGroup} in
+ * one transaction, which also marks each applied submission {@link TransferSubmissionStatus#COMPLETED}.
+ * A submission is therefore applied at most once even if a worker stops halfway; whatever is still
+ * pending is picked up again. Rejected transfers are marked {@link TransferSubmissionStatus#FAILED}
+ * afterwards, as are submissions that fail on their own with an error that is not transient, so a
+ * submission that can never be applied does not hold up the ones queued behind it.
+ *
+ * <p>Workers wake up when a submission is accepted and otherwise poll every
+ * {@code poll-interval-ms}, which also picks up submissions accepted before a restart. Like
+ * {@link TransferPipeline}, not available with the {@code IN_MEMORY} engine or with database shards.
+ */
+@Service
+public class AsyncTransferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncTransferService.class);
+
+    private static final String PROCESSING_FAILED_MESSAGE = "Transfer could not be processed";
+
+    private final AccountService accountService;
+    private final TransferSubmissionRepository transferSubmissionRepository;
+    private final BankingMetrics bankingMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final TransferEngine transferEngine;
+    private final boolean databaseShardsEnabled;
+    private final int workerCount;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final Object signal = new Object();
+
+    private volatile boolean running;
+    private boolean signalled;
+    private Thread[] workers;
+
+    public AsyncTransferService(AccountService accountService,
+                                TransferSubmissionRepository transferSubmissionRepository,
+                                BankingMetrics bankingMetrics,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.transfer.async.enabled:false}") boolean enabled,
+                                @Value("${app.transfer.engine:LOCKING}") TransferEngine transferEngine,
+                                @Value("${app.datasource.shards.enabled:false}") boolean databaseShardsEnabled,
+                                @Value("${app.transfer.async.workers:2}") int workerCount,
+                                @Value("${app.transfer.async.batch-size:64}") int batchSize,
+                                @Value("${app.transfer.async.poll-interval-ms:500}") long pollIntervalMs) {
+        this.accountService = accountService;
+        this.transferSubmissionRepository = transferSubmissionRepository;
+        this.bankingMetrics = bankingMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.transferEngine = transferEngine;
+        this.databaseShardsEnabled = databaseShardsEnabled;
+        this.workerCount = Math.max(1, workerCount);
+        this.batchSize = Math.max(1, batchSize);
+        this.pollIntervalMs = Math.max(1, pollIntervalMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (transferEngine == TransferEngine.IN_MEMORY) {
+            throw new IllegalStateException("Asynchronous transfers do not support the IN_MEMORY transfer engine");
+        }
+        if (databaseShardsEnabled) {
+            throw new IllegalStateException("Asynchronous transfers do not support database shards");
+        }
+
+        running = true;
+        workers = new Thread[workerCount];
+        for (int index = 0; index < workerCount; index++) {
+            int worker = index;
+            workers[index] = new Thread(() -> drain(worker), "transfer-async-" + index);
+            workers[index].setDaemon(true);
+            workers[index].start();
+        }
+        logger.info("Asynchronous transfers started with {} workers, batches of up to {} transfers",
+                workerCount, batchSize);
+    }
+
+    /**
+     * Stops the workers after their current batch. Pending submissions stay queued for the next start.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (workers == null) {
+            return;
+        }
+        running = false;
+        wakeWorkers();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Queues the transfer and returns its submission. Submitting again with the same idempotency key
+     * and request returns the existing submission instead of queueing another one.
+     *
+     * @throws IdempotencyConflictException if the key was used for a different request
+     */
+    public TransferSubmissionResponse submit(String username,
+                                             String idempotencyKey,
+                                             String requestHash,
+                                             TransferRequest request) {
+        if (!running) {
+            throw new IllegalStateException("Asynchronous transfers are not enabled");
+        }
+
+        String scopedKey = username + ":" + idempotencyKey;
+        TransferSubmission submission = bankingMetrics.recordOperation("transfer_submit", () -> {
+            try {
+                return transactionTemplate.execute(status -> enqueue(scopedKey, requestHash, username, request));
+            } catch (DataIntegrityViolationException ex) {
+                // A concurrent submission with the same key inserted first; return that one.
+                return transactionTemplate.execute(status -> enqueue(scopedKey, requestHash, username, request));
+            }
+        });
+
+        if (submission.getStatus() == TransferSubmissionStatus.PENDING) {
+            wakeWorkers();
+        }
+        return mapToResponse(submission);
+    }
+
+    /**
+     * @throws ResourceNotFoundException if there is no submission with this id
+     */
+    public TransferSubmissionResponse getSubmission(String id) {
+        return transactionTemplate.execute(status -> transferSubmissionRepository.findById(id)
+                .map(this::mapToResponse)
+                .orElseThrow(() -> new ResourceNotFoundException("Transfer not found")));
+    }
+
+    /**
+     * Checks for method security that the submission was made by the user.
+     */
+    public boolean isSubmitter(String id, String username) {
+        if (id == null || username == null || username.isBlank()) {
+            return false;
+        }
+        return transactionTemplate.execute(status -> transferSubmissionRepository.findUsernameById(id))
+                .map(username::equals)
+                .orElse(false);
+    }
+
+    private TransferSubmission enqueue(String scopedKey, String requestHash, String username, TransferRequest request) {
+        TransferSubmission existing = transferSubmissionRepository.findByIdempotencyKey(scopedKey).orElse(null);
+        if (existing != null) {
+            if (!existing.getRequestHash().equals(requestHash)) {
+                throw new IdempotencyConflictException("Idempotency key reuse with different request");
+            }
+            return existing;
+        }
+
+        return transferSubmissionRepository.saveAndFlush(TransferSubmission.builder()
+                .id(UUID.randomUUID().toString())
+                .idempotencyKey(scopedKey)
+                .requestHash(requestHash)
+                .username(username)
+                .fromAccountId(request.getFromAccountId())
+                .toAccountId(request.getToAccountId())
+                .amount(request.getAmount())
+                .status(TransferSubmissionStatus.PENDING)
+                .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .build());
+    }
+
+    private void wakeWorkers() {
+        synchronized (signal) {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void drain(int worker) {
+        while (running) {
+            int processed;
+            try {
+                processed = processBatch(worker);
+            } catch (RuntimeException ex) {
+                logger.warn("Could not process queued transfers", ex);
+                processed = 0;
+            }
+
+            if (processed < batchSize && !awaitWork()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits until a submission is accepted or the poll interval has passed.
+     *
+     * @return {@code false} if the worker was interrupted
+     */
+    private boolean awaitWork() {
+        synchronized (signal) {
+            try {
+                if (!signalled && running) {
+                    signal.wait(pollIntervalMs);
+                }
+                signalled = false;
+                return true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Applies the worker's oldest pending submissions. If the batch fails as a whole, its submissions
+     * are applied one by one, and each that still fails is handled by {@link #handleFailure}.
+     *
+     * @return the number of submissions read
+     */
+    private int processBatch(int worker) {
+        List<TransferSubmission> batch = transactionTemplate.execute(status -> transferSubmissionRepository
+                .findPending(workerCount, worker, PageRequest.of(0, batchSize)));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            applyBatch(batch);
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                handleFailure(batch.get(0), ex);
+                return batch.size();
+            }
+            logger.warn("Batch of {} queued transfers failed, applying them one by one", batch.size(), ex);
+            for (TransferSubmission submission : batch) {
+                try {
+                    applyBatch(List.of(submission));
+                } catch (RuntimeException singleEx) {
+                    handleFailure(submission, singleEx);
+                }
+            }
+        }
+        return batch.size();
+    }
+
+    /**
+     * Leaves a submission that failed on its own pending if the failure is transient, to be retried on
+     * a later poll. Any other failure would repeat on every poll, and since the worker always reads its
+     * oldest submissions first it would keep failing their batches, so the submission is marked failed.
+     */
+    private void handleFailure(TransferSubmission submission, RuntimeException ex) {
+        if (isTransient(ex)) {
+            logger.warn("Queued transfer {} failed and stays pending", submission.getId(), ex);
+            return;
+        }
+
+        logger.error("Queued transfer {} cannot be applied and is marked failed", submission.getId(), ex);
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    finish(submission, TransferSubmissionStatus.FAILED, PROCESSING_FAILED_MESSAGE));
+        } catch (RuntimeException finishEx) {
+            logger.warn("Could not mark queued transfer {} failed", submission.getId(), finishEx);
+        }
+    }
+
+    private static boolean isTransient(RuntimeException ex) {
+        return ex instanceof TransientDataAccessException
+                || ex instanceof RecoverableDataAccessException
+                || ex instanceof DataAccessResourceFailureException
+                || ex instanceof TransactionException
+                || ex instanceof LockContentionException;
+    }
+
+    private void applyBatch(List<TransferSubmission> batch) {
+        List<TransferRequest> requests = new ArrayList<>(batch.size());
+        List<UnaryOperator<AccountResponse>> recorders = new ArrayList<>(batch.size());
+        for (TransferSubmission submission : batch) {
+            requests.add(TransferRequest.builder()
+                    .fromAccountId(submission.getFromAccountId())
+                    .toAccountId(submission.getToAccountId())
+                    .amount(submission.getAmount())
+                    .build());
+            recorders.add(sourceAccount -> {
+                if (finish(submission, TransferSubmissionStatus.COMPLETED, null) == 0) {
+                    throw new IdempotencyInProgressException("Transfer was already processed");
+                }
+                return sourceAccount;
+            });
+        }
+
+        List<TransferOutcome> outcomes = accountService.transferGroup(requests, recorders);
+        bankingMetrics.recordAsyncBatch(batch.size());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int index = 0; index < batch.size(); index++) {
+                RuntimeException failure = outcomes.get(index).failure();
+                // A submission finished by someone else is left as they recorded it.
+                if (failure != null && !(failure instanceof IdempotencyInProgressException)) {
+                    finish(batch.get(index), TransferSubmissionStatus.FAILED, failure.getMessage());
+                }
+            }
+        });
+    }
+
+    private int finish(TransferSubmission submission, TransferSubmissionStatus status, String failureReason) {
+        return transferSubmissionRepository.finish(
+                submission.getId(),
+                status,
+                failureReason,
+                LocalDateTime.now().truncatedTo(ChronoUnit.MICROS)
+        );
+    }
+
+    private TransferSubmissionResponse mapToResponse(TransferSubmission submission) {
+        return TransferSubmissionResponse.builder()
+                .id(submission.getId())
+                .status(submission.getStatus())
+                .fromAccountId(submission.getFromAccountId())
+                .toAccountId(submission.getToAccountId())
+                .amount(submission.getAmount())
+                .failureReason(submission.getFailureReason())
+                .createdAt(submission.getCreatedAt())
+                .processedAt(submission.getProcessedAt())
+                .build();
+    }
+}
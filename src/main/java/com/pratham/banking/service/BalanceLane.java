@@ -0,0 +1,360 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.entity.Money;
+import com.pratham.banking.exception.InsufficientBalanceException;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import com.pratham.banking.exception.ServerBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded owner of the balances of one partition of accounts.
+ *
+ * <p>Only the lane thread reads or writes its balances, so commands need no locks. The thread drains
+ * its queue in batches, applies each command to the in-memory balances and appends the resulting
+ * records to the shared {@link LedgerJournal}. It then moves on to the next batch while the ledger's
+ * group commit makes the records durable; only after that are the batch's callers answered and its
+ * cross-lane transfers forwarded, so nothing leaves the lane before the record that caused it is
+ * durable. Answers to reads wait for the lane's last record as well, so they never show a balance that
+ * could still be lost. A command whose caller gave up waiting before the lane reached it is skipped;
+ * see {@link LaneResult}.
+ *
+ * <p>Accounts are taken from the engine, which normally read them on the caller's thread, the first time
+ * the lane sees them and stay resident.
+ */
+final class BalanceLane implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceLane.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int index;
+    private final InMemoryBalanceEngine engine;
+    private final LedgerJournal ledger;
+    private final LinkedBlockingQueue<LaneCommand> queue = new LinkedBlockingQueue<>();
+    private final int queueCapacity;
+    private final int maxBatchSize;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    private long lastRecordId = -1;
+
+    // Open-addressing index from account id to slot; an id of 0 marks a free bucket.
+    private long[] bucketIds = new long[INITIAL_CAPACITY * 2];
+    private int[] bucketSlots = new int[INITIAL_CAPACITY * 2];
+
+    private long[] balances = new long[INITIAL_CAPACITY];
+    private long[] userIds = new long[INITIAL_CAPACITY];
+    private LocalDateTime[] createdAts = new LocalDateTime[INITIAL_CAPACITY];
+    private long[] accountIds = new long[INITIAL_CAPACITY];
+    private int accountCount;
+
+    BalanceLane(int index, InMemoryBalanceEngine engine, LedgerJournal ledger, int queueCapacity, int maxBatchSize) {
+        this.index = index;
+        this.engine = engine;
+        this.ledger = ledger;
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.thread = new Thread(this, "balance-lane-" + index);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops accepting commands and lets the thread finish the queued ones.
+     */
+    void stop() throws InterruptedException {
+        running = false;
+        thread.join();
+    }
+
+    /**
+     * Queues a command from a caller, rejecting it when the lane is saturated.
+     */
+    void submit(LaneCommand command) {
+        if (!running || failed) {
+            throw new IllegalStateException("Balance lane " + index + " is not accepting commands");
+        }
+        if (queue.size() >= queueCapacity) {
+            throw new ServerBusyException("Balance lane " + index + " is saturated, please retry");
+        }
+        queue.add(command);
+    }
+
+    /**
+     * Queues a command forwarded by another lane. Hand-offs bypass the capacity check, so two lanes
+     * forwarding to each other can never block.
+     */
+    void handOff(LaneCommand command) {
+        queue.add(command);
+    }
+
+    @Override
+    public void run() {
+        List<LaneCommand> batch = new ArrayList<>(maxBatchSize);
+
+        while ((running || !queue.isEmpty()) && !failed) {
+            LaneCommand first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (first == null) {
+                continue;
+            }
+
+            batch.add(first);
+            queue.drainTo(batch, maxBatchSize - 1);
+            List<Runnable> afterSync = new ArrayList<>(batch.size());
+            for (LaneCommand command : batch) {
+                if (command.fromCaller() && !command.result().start()) {
+                    // The caller stopped waiting and was told to retry.
+                    continue;
+                }
+                try {
+                    apply(command, afterSync);
+                } catch (IOException ex) {
+                    fail(ex, batch);
+                    return;
+                } catch (RuntimeException ex) {
+                    afterSync.add(() -> command.result().completeExceptionally(ex));
+                }
+            }
+
+            List<LaneCommand> commands = List.copyOf(batch);
+            CompletableFuture<Void> durable = lastRecordId < 0
+                    ? CompletableFuture.completedFuture(null)
+                    : ledger.whenDurable(lastRecordId);
+            durable.whenComplete((ignored, failure) -> {
+                if (failure == null) {
+                    afterSync.forEach(Runnable::run);
+                } else {
+                    fail(failure, commands);
+                }
+            });
+            batch.clear();
+        }
+    }
+
+    private void apply(LaneCommand command, List<Runnable> afterSync) throws IOException {
+        switch (command.kind()) {
+            case BALANCE -> {
+                BalanceSnapshot snapshot = snapshot(requireSlot(command.accountId()));
+                afterSync.add(() -> command.result().complete(snapshot));
+            }
+            case DEPOSIT -> {
+                int slot = requireSlot(command.accountId());
+                balances[slot] = Money.add(balances[slot], command.amount());
+                append(LedgerRecord.Type.DEPOSIT, 0, 0, command.accountId(), command.amount(), 0, balances[slot]);
+                complete(command, snapshot(slot), afterSync);
+            }
+            case WITHDRAW -> {
+                int slot = requireSlot(command.accountId());
+                requireFunds(slot, command.amount());
+                balances[slot] -= command.amount();
+                append(LedgerRecord.Type.WITHDRAW, 0, command.accountId(), 0, command.amount(), balances[slot], 0);
+                complete(command, snapshot(slot), afterSync);
+            }
+            case TRANSFER -> applyTransfer(command, afterSync);
+            case CREDIT -> applyCredit(command, afterSync);
+            case REFUND -> {
+                int slot = requireSlot(command.accountId());
+                balances[slot] = Money.add(balances[slot], command.amount());
+                append(LedgerRecord.Type.TRANSFER_REFUND, command.transferId(), command.accountId(),
+                        command.counterpartyId(), command.amount(), balances[slot], 0);
+                afterSync.add(() -> {
+                    engine.closeTransfer(command.transferId());
+                    command.result().completeExceptionally(new ResourceNotFoundException("Account not found"));
+                });
+            }
+        }
+    }
+
+    /**
+     * Debits the source on this lane. A destination on the same lane is credited in the same record;
+     * otherwise the debit is recorded as {@code TRANSFER_OUT} and, once durable, the credit is handed
+     * to the destination lane, which answers the caller.
+     */
+    private void applyTransfer(LaneCommand command, List<Runnable> afterSync) throws IOException {
+        long fromAccountId = command.accountId();
+        long toAccountId = command.counterpartyId();
+        long amount = command.amount();
+
+        int fromSlot = requireSlot(fromAccountId);
+        BalanceLane destinationLane = engine.laneFor(toAccountId);
+        if (destinationLane == this) {
+            int toSlot = requireSlot(toAccountId);
+            requireFunds(fromSlot, amount);
+            long toBalance = Money.add(balances[toSlot], amount);
+            balances[fromSlot] -= amount;
+            balances[toSlot] = toBalance;
+            append(LedgerRecord.Type.TRANSFER, 0, fromAccountId, toAccountId, amount,
+                    balances[fromSlot], balances[toSlot]);
+            complete(command, snapshot(fromSlot), afterSync);
+            return;
+        }
+
+        requireFunds(fromSlot, amount);
+        balances[fromSlot] -= amount;
+        LedgerRecord debit;
+        engine.beginTransfer();
+        try {
+            debit = append(LedgerRecord.Type.TRANSFER_OUT, 0, fromAccountId, toAccountId, amount,
+                    balances[fromSlot], 0);
+            engine.openTransfer(debit.id());
+        } finally {
+            engine.endTransfer();
+        }
+
+        LaneCommand credit = LaneCommand.credit(debit.id(), fromAccountId, toAccountId, amount,
+                snapshot(fromSlot), this, command.result());
+        afterSync.add(() -> destinationLane.handOff(credit));
+    }
+
+    /**
+     * Credits the destination of a cross-lane transfer, or sends the amount back to the source lane
+     * when the destination account does not exist or cannot hold the amount.
+     */
+    private void applyCredit(LaneCommand command, List<Runnable> afterSync) throws IOException {
+        int slot = findSlot(command.counterpartyId());
+        if (slot < 0 || balances[slot] > Money.MAX - command.amount()) {
+            LaneCommand refund = LaneCommand.refund(command.transferId(), command.accountId(),
+                    command.counterpartyId(), command.amount(), command.result());
+            afterSync.add(() -> command.sourceLane().handOff(refund));
+            return;
+        }
+
+        balances[slot] += command.amount();
+        append(LedgerRecord.Type.TRANSFER_IN, command.transferId(), command.accountId(),
+                command.counterpartyId(), command.amount(), command.snapshot().balance(), balances[slot]);
+        afterSync.add(() -> engine.closeTransfer(command.transferId()));
+        complete(command, command.snapshot(), afterSync);
+    }
+
+    private LedgerRecord append(LedgerRecord.Type type,
+                                long transferId,
+                                long fromAccountId,
+                                long toAccountId,
+                                long amount,
+                                long fromBalance,
+                                long toBalance) throws IOException {
+        LedgerRecord record = ledger.append(type, transferId, fromAccountId, toAccountId, amount, fromBalance, toBalance);
+        lastRecordId = record.id();
+        return record;
+    }
+
+    private void complete(LaneCommand command, BalanceSnapshot snapshot, List<Runnable> afterSync) {
+        afterSync.add(() -> command.result().complete(snapshot));
+    }
+
+    private void requireFunds(int slot, long amount) {
+        if (balances[slot] < amount) {
+            throw new InsufficientBalanceException("Insufficient balance");
+        }
+    }
+
+    private BalanceSnapshot snapshot(int slot) {
+        return new BalanceSnapshot(accountIds[slot], userIds[slot], balances[slot], createdAts[slot]);
+    }
+
+    private int requireSlot(long accountId) {
+        int slot = findSlot(accountId);
+        if (slot < 0) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the slot of a resident account, loading it from the database on first use.
+     *
+     * @return the slot, or {@code -1} if the account does not exist
+     */
+    private int findSlot(long accountId) {
+        int mask = bucketIds.length - 1;
+        int bucket = bucketOf(accountId, mask);
+        while (bucketIds[bucket] != 0) {
+            if (bucketIds[bucket] == accountId) {
+                return bucketSlots[bucket];
+            }
+            bucket = (bucket + 1) & mask;
+        }
+
+        BalanceSnapshot loaded = engine.takeAccount(accountId);
+        if (loaded == null) {
+            return -1;
+        }
+        return addAccount(loaded);
+    }
+
+    private int addAccount(BalanceSnapshot account) {
+        if (accountCount == balances.length) {
+            int capacity = balances.length * 2;
+            balances = Arrays.copyOf(balances, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            createdAts = Arrays.copyOf(createdAts, capacity);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+            rehash(capacity * 2);
+        }
+
+        int slot = accountCount++;
+        accountIds[slot] = account.accountId();
+        balances[slot] = account.balance();
+        userIds[slot] = account.userId();
+        createdAts[slot] = account.createdAt();
+        insertBucket(account.accountId(), slot);
+        return slot;
+    }
+
+    private void rehash(int bucketCount) {
+        bucketIds = new long[bucketCount];
+        bucketSlots = new int[bucketCount];
+        for (int slot = 0; slot < accountCount; slot++) {
+            insertBucket(accountIds[slot], slot);
+        }
+    }
+
+    private void insertBucket(long accountId, int slot) {
+        int mask = bucketIds.length - 1;
+        int bucket = bucketOf(accountId, mask);
+        while (bucketIds[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        bucketIds[bucket] = accountId;
+        bucketSlots[bucket] = slot;
+    }
+
+    private static int bucketOf(long accountId, int mask) {
+        return (int) (accountId * 0x9E3779B97F4A7C15L >>> 32) & mask;
+    }
+
+    /**
+     * A ledger write failed, so the in-memory balances may be ahead of the ledger. The lane stops and
+     * fails every pending command; the ledger is replayed on the next start.
+     */
+    private void fail(Throwable cause, List<LaneCommand> batch) {
+        failed = true;
+        logger.error("Balance lane {} stopped after a ledger write failure", index, cause);
+
+        IllegalStateException failure = new IllegalStateException("Ledger write failed", cause);
+        batch.forEach(command -> command.result().completeExceptionally(failure));
+        LaneCommand pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(failure);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.AccountBalanceShard;
+import com.pratham.banking.entity.Money;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import com.pratham.banking.repository.AccountBalanceShardRepository;
+import com.pratham.banking.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Service that spreads the balance of hot accounts across shard rows.
+ *
+ * <p>The balance of a sharded account is {@code accounts.balance} plus the sum of its shard rows.
+ * Credits lock a single random shard instead of the account row, so concurrent credits scale with
+ * the shard count. Debits still lock the account row and, when its own balance is short, borrow from
+ * the shards in shard-index order. Callers must acquire locks per account in ascending account id
+ * order (account row first, then its shards) to stay deadlock-free.
+ *
+ * <p>Shard counts are cached in a bounded LRU map for {@code count-cache.ttl-ms}. Sharding enabled
+ * through this instance applies here once it commits; other instances pick it up when their entry
+ * expires.
+ */
+@Service
+public class BalanceShardService {
+
+    private final AccountRepository accountRepository;
+    private final AccountBalanceShardRepository accountBalanceShardRepository;
+    private final BankingMetrics bankingMetrics;
+    private final boolean enabled;
+    private final long countCacheTtlMs;
+    private final Map<Long, CachedShardCount> shardCounts;
+
+    public BalanceShardService(AccountRepository accountRepository,
+                               AccountBalanceShardRepository accountBalanceShardRepository,
+                               BankingMetrics bankingMetrics,
+                               @Value("${app.account.sharding.enabled:false}") boolean enabled,
+                               @Value("${app.account.sharding.count-cache.ttl-ms:10000}") long countCacheTtlMs,
+                               @Value("${app.account.sharding.count-cache.max-entries:100000}") int countCacheMaxEntries) {
+        this.accountRepository = accountRepository;
+        this.accountBalanceShardRepository = accountBalanceShardRepository;
+        this.bankingMetrics = bankingMetrics;
+        this.enabled = enabled;
+        this.countCacheTtlMs = countCacheTtlMs;
+        this.shardCounts = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedShardCount> eldest) {
+                return size() > countCacheMaxEntries;
+            }
+        });
+    }
+
+    /**
+     * Splits the account balance across {@code shardCount} shard rows. Existing funds stay on the
+     * account row; only future credits are spread.
+     *
+     * @param accountId  the account to shard
+     * @param shardCount the number of shards, which may only grow
+     * @return the sharded account
+     */
+    @Transactional
+    public Account enableSharding(Long accountId, int shardCount) {
+        if (!enabled) {
+            throw new IllegalStateException("Account sharding is disabled");
+        }
+
+        Account account = accountRepository.findByIdForUpdate(accountId)
+                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+
+        int currentShardCount = account.getShardCount() == null ? 0 : account.getShardCount();
+        if (shardCount < currentShardCount) {
+            throw new IllegalArgumentException("Shard count cannot be reduced");
+        }
+
+        long existingShards = accountBalanceShardRepository.countByAccountId(accountId);
+        for (int shardIndex = (int) existingShards; shardIndex < shardCount; shardIndex++) {
+            accountBalanceShardRepository.save(AccountBalanceShard.builder()
+                    .accountId(accountId)
+                    .shardIndex(shardIndex)
+                    .build());
+        }
+
+        account.setShardCount(shardCount);
+        Account savedAccount = accountRepository.save(account);
+        // Publish the new count only once the shard rows are visible to other transactions.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                shardCounts.put(accountId, new CachedShardCount(shardCount, System.currentTimeMillis() + countCacheTtlMs));
+            }
+        });
+        return savedAccount;
+    }
+
+    /**
+     * Credits a random shard of the account if it is sharded.
+     *
+     * @return {@code true} if the credit was applied to a shard, {@code false} if the caller must
+     * credit the account row itself
+     */
+    public boolean creditIfSharded(Long accountId, long amount) {
+        if (!enabled) {
+            return false;
+        }
+
+        int shardCount = resolveShardCount(accountId);
+        if (shardCount < 2) {
+            return false;
+        }
+
+        int shardIndex = ThreadLocalRandom.current().nextInt(shardCount);
+        AccountBalanceShard shard = bankingMetrics.recordLockWait(
+                        BankingMetrics.LOCK_SHARD,
+                        () -> accountBalanceShardRepository.findByAccountIdAndShardIndexForUpdate(accountId, shardIndex)
+                )
+                .orElseThrow(() -> new IllegalStateException("Balance shard missing for account " + accountId));
+        shard.setBalance(Money.add(shard.getBalance(), amount));
+        accountBalanceShardRepository.save(shard);
+        return true;
+    }
+
+    /**
+     * Moves funds from the shards onto the locked account row until it covers {@code amount}
+     * or the shards are exhausted. Does nothing for unsharded accounts.
+     *
+     * @param lockedAccount an account already locked with {@code findByIdForUpdate}
+     * @param amount        the amount the account row must cover
+     */
+    public void borrow(Account lockedAccount, long amount) {
+        if (!lockedAccount.isSharded()) {
+            return;
+        }
+
+        long needed = amount - lockedAccount.getBalance();
+        if (needed <= 0) {
+            return;
+        }
+
+        List<AccountBalanceShard> shards = bankingMetrics.recordLockWait(
+                BankingMetrics.LOCK_SHARD,
+                () -> accountBalanceShardRepository.findByAccountIdForUpdate(lockedAccount.getId())
+        );
+        for (AccountBalanceShard shard : shards) {
+            long taken = Math.min(shard.getBalance(), needed);
+            if (taken <= 0) {
+                continue;
+            }
+
+            shard.setBalance(shard.getBalance() - taken);
+            lockedAccount.setBalance(lockedAccount.getBalance() + taken);
+            needed -= taken;
+            if (needed <= 0) {
+                break;
+            }
+        }
+    }
+
+    public boolean isSharded(Long accountId) {
+        if (!enabled) {
+            return false;
+        }
+        return resolveShardCount(accountId) > 1;
+    }
+
+    public long totalBalance(Account account) {
+        if (!account.isSharded()) {
+            return account.getBalance();
+        }
+        return addShardBalance(account.getId(), account.getBalance());
+    }
+
+    /**
+     * Same as {@link #totalBalance(Account)} for an account whose row balance was read without loading
+     * the entity.
+     */
+    public long totalBalance(Long accountId, long accountBalance) {
+        if (!isSharded(accountId)) {
+            return accountBalance;
+        }
+        return addShardBalance(accountId, accountBalance);
+    }
+
+    private long addShardBalance(Long accountId, long accountBalance) {
+        long shardBalance = Money.fromDecimal(accountBalanceShardRepository.sumBalanceByAccountId(accountId));
+        return Money.add(accountBalance, shardBalance);
+    }
+
+    /**
+     * Returns the cached shard count of the account, caching unsharded and unknown accounts as 0 so
+     * they are not looked up again on every credit. A count loaded here never replaces one cached while
+     * the lookup ran, such as a count published by {@link #enableSharding} after this lookup read the row.
+     */
+    private int resolveShardCount(Long accountId) {
+        long now = System.currentTimeMillis();
+        CachedShardCount cached = shardCounts.get(accountId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.shardCount();
+        }
+
+        int loadedShardCount = accountRepository.findShardCountById(accountId).orElse(0);
+        CachedShardCount loaded = new CachedShardCount(loadedShardCount, now + countCacheTtlMs);
+        return shardCounts.merge(accountId, loaded, (current, ignored) -> current == cached ? loaded : current)
+                .shardCount();
+    }
+
+    private record CachedShardCount(int shardCount, long expiresAt) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.pratham.banking.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * An account as held by a {@link BalanceLane}, with its balance in {@link com.pratham.banking.entity.Money} minor units.
+ */
+public record BalanceSnapshot(long accountId, long userId, long balance, LocalDateTime createdAt) {
+}
@@ -0,0 +1,164 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.exception.IdempotencyConflictException;
+import com.pratham.banking.exception.IdempotencyInProgressException;
+import com.pratham.banking.exception.InsufficientBalanceException;
+import com.pratham.banking.exception.InvalidTransferException;
+import com.pratham.banking.exception.LockContentionException;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Meters for the money path, published through Micrometer.
+ *
+ * <p>All timers publish percentile histograms so latency quantiles can be aggregated across instances.
+ */
+@Component
+public class BankingMetrics {
+
+    public static final String OPERATION_TIMER = "banking.account.operation";
+    public static final String LOCK_WAIT_TIMER = "banking.lock.wait";
+    public static final String LOCK_FAILURE_COUNTER = "banking.lock.failures";
+    public static final String IDEMPOTENCY_COUNTER = "banking.idempotency.requests";
+    public static final String JWT_VALIDATION_TIMER = "banking.jwt.validation";
+    public static final String GROUP_COMMIT_SUMMARY = "banking.transfer.group_commit.size";
+    public static final String ASYNC_BATCH_SUMMARY = "banking.transfer.async.batch.size";
+
+    public static final String LOCK_ACCOUNT = "account";
+    public static final String LOCK_SHARD = "shard";
+
+    public static final String IDEMPOTENCY_EXECUTED = "executed";
+    public static final String IDEMPOTENCY_CACHE_REPLAY = "cache_replay";
+    public static final String IDEMPOTENCY_STORE_REPLAY = "store_replay";
+    public static final String IDEMPOTENCY_IN_FLIGHT_REPLAY = "in_flight_replay";
+    public static final String IDEMPOTENCY_UNSCOPED_REPLAY = "unscoped_replay";
+    public static final String IDEMPOTENCY_CONFLICT = "conflict";
+    public static final String IDEMPOTENCY_IN_PROGRESS = "in_progress";
+
+    private final MeterRegistry meterRegistry;
+
+    public BankingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Times a money-path operation, tagging the result with its outcome.
+     *
+     * @param operation the operation name, e.g. {@code transfer}
+     * @param action    the operation body
+     * @return the operation result
+     */
+    public <T> T recordOperation(String operation, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = action.get();
+            outcome = "success";
+            return result;
+        } catch (InsufficientBalanceException ex) {
+            outcome = "insufficient_balance";
+            throw ex;
+        } catch (InvalidTransferException | IllegalArgumentException ex) {
+            outcome = "rejected";
+            throw ex;
+        } catch (ResourceNotFoundException ex) {
+            outcome = "not_found";
+            throw ex;
+        } catch (IdempotencyConflictException ex) {
+            outcome = "idempotency_conflict";
+            throw ex;
+        } catch (LockContentionException ex) {
+            outcome = "lock_contention";
+            throw ex;
+        } finally {
+            sample.stop(timer(OPERATION_TIMER, "operation", operation, "outcome", outcome));
+        }
+    }
+
+    /**
+     * Times how long a locking read waits to acquire its row locks.
+     *
+     * @param lock which kind of row is locked, {@link #LOCK_ACCOUNT} or {@link #LOCK_SHARD}
+     * @param action the locking read
+     * @return the locked rows
+     */
+    public <T> T recordLockWait(String lock, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return action.get();
+        } finally {
+            sample.stop(timer(LOCK_WAIT_TIMER, "lock", lock));
+        }
+    }
+
+    /**
+     * Counts one lock conflict by cause and whether it was retried or ended the operation.
+     *
+     * @param cause   the classified failure, e.g. {@code deadlock} or {@code lock_timeout}
+     * @param retried {@code true} if the operation was retried
+     */
+    public void recordLockFailure(String cause, boolean retried) {
+        Counter.builder(LOCK_FAILURE_COUNTER)
+                .tag("cause", cause)
+                .tag("result", retried ? "retried" : "exhausted")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts one idempotent request by how it was answered.
+     */
+    public void recordIdempotency(String result) {
+        Counter.builder(IDEMPOTENCY_COUNTER)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordIdempotencyFailure(RuntimeException ex) {
+        if (ex instanceof IdempotencyConflictException) {
+            recordIdempotency(IDEMPOTENCY_CONFLICT);
+        } else if (ex instanceof IdempotencyInProgressException) {
+            recordIdempotency(IDEMPOTENCY_IN_PROGRESS);
+        }
+    }
+
+    /**
+     * Records how many transfers one group-commit transaction carried.
+     */
+    public void recordGroupCommit(int transfers) {
+        DistributionSummary.builder(GROUP_COMMIT_SUMMARY)
+                .register(meterRegistry)
+                .record(transfers);
+    }
+
+    /**
+     * Records how many queued asynchronous transfers one worker transaction applied.
+     */
+    public void recordAsyncBatch(int transfers) {
+        DistributionSummary.builder(ASYNC_BATCH_SUMMARY)
+                .register(meterRegistry)
+                .record(transfers);
+    }
+
+    public Timer.Sample startJwtValidation() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopJwtValidation(Timer.Sample sample, String outcome) {
+        sample.stop(timer(JWT_VALIDATION_TIMER, "outcome", outcome));
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
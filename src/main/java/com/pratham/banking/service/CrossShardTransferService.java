@@ -0,0 +1,309 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.CrossShardTransfer;
+import com.pratham.banking.entity.CrossShardTransferStatus;
+import com.pratham.banking.entity.Money;
+import com.pratham.banking.entity.Transaction;
+import com.pratham.banking.entity.TransactionType;
+import com.pratham.banking.exception.InsufficientBalanceException;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.CrossShardCreditRepository;
+import com.pratham.banking.repository.CrossShardTransferRepository;
+import com.pratham.banking.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves money between accounts on different database shards as a saga of local transactions.
+ *
+ * <ol>
+ *   <li>On the source shard: debit the source account, write its {@code transactions} row and a
+ *   {@link CrossShardTransfer} in state {@link CrossShardTransferStatus#PENDING}.</li>
+ *   <li>On the destination shard: insert a {@link com.pratham.banking.entity.CrossShardCredit} marker,
+ *   credit the destination account and write its {@code transactions} row. The marker makes the step
+ *   idempotent, so it can be retried after any failure.</li>
+ *   <li>On the source shard: mark the transfer {@link CrossShardTransferStatus#COMPLETED}, or, if the
+ *   destination account does not exist, return the debit with a compensating credit row and mark it
+ *   {@link CrossShardTransferStatus#REFUNDED}.</li>
+ * </ol>
+ *
+ * <p>Once the first step has committed the transfer is reported as successful even if the later
+ * steps fail; {@link #recoverPendingTransfers} retries them until they go through. In between, the
+ * money has left the source account but not yet reached the destination.
+ */
+@Service
+public class CrossShardTransferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrossShardTransferService.class);
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final CrossShardTransferRepository crossShardTransferRepository;
+    private final CrossShardCreditRepository crossShardCreditRepository;
+    private final BalanceShardService balanceShardService;
+    private final BankingMetrics bankingMetrics;
+    private final LockRetryExecutor lockRetryExecutor;
+    private final DatabaseShardRouter databaseShardRouter;
+    private final ShardStepFence shardStepFence;
+    private final long recoveryDelayMs;
+    private final int recoveryBatchSize;
+
+    public CrossShardTransferService(AccountRepository accountRepository,
+                                     TransactionRepository transactionRepository,
+                                     CrossShardTransferRepository crossShardTransferRepository,
+                                     CrossShardCreditRepository crossShardCreditRepository,
+                                     BalanceShardService balanceShardService,
+                                     BankingMetrics bankingMetrics,
+                                     LockRetryExecutor lockRetryExecutor,
+                                     DatabaseShardRouter databaseShardRouter,
+                                     ShardStepFence shardStepFence,
+                                     @Value("${app.datasource.shards.recovery-delay-ms:10000}") long recoveryDelayMs,
+                                     @Value("${app.datasource.shards.recovery-batch-size:100}") int recoveryBatchSize) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.crossShardTransferRepository = crossShardTransferRepository;
+        this.crossShardCreditRepository = crossShardCreditRepository;
+        this.balanceShardService = balanceShardService;
+        this.bankingMetrics = bankingMetrics;
+        this.lockRetryExecutor = lockRetryExecutor;
+        this.databaseShardRouter = databaseShardRouter;
+        this.shardStepFence = shardStepFence;
+        this.recoveryDelayMs = recoveryDelayMs;
+        this.recoveryBatchSize = Math.max(1, recoveryBatchSize);
+    }
+
+    /**
+     * Transfers {@code amount} between accounts on different shards. The debit is fenced as
+     * {@code step} of the current idempotent request, so a retry of a request whose debit already
+     * committed resumes that transfer instead of debiting again.
+     *
+     * @return the source account after the debit
+     * @throws ResourceNotFoundException    if either account does not exist
+     * @throws InsufficientBalanceException if the source account cannot cover the amount
+     */
+    public AccountResponse transfer(Long fromAccountId, Long toAccountId, long amount, String step) {
+        int destinationShard = databaseShardRouter.shardOf(toAccountId);
+        if (!databaseShardRouter.read(destinationShard, () -> accountRepository.existsById(toAccountId))) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+
+        int sourceShard = databaseShardRouter.shardOf(fromAccountId);
+        CrossShardTransfer transfer = CrossShardTransfer.builder()
+                .id(UUID.randomUUID().toString())
+                .fromAccountId(fromAccountId)
+                .toAccountId(toAccountId)
+                .amount(amount)
+                .status(CrossShardTransferStatus.PENDING)
+                .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .build();
+        CrossShardDebit debit = shardStepFence.executeOnce(
+                sourceShard,
+                step,
+                CrossShardDebit.class,
+                () -> new CrossShardDebit(transfer.getId(), debit(transfer))
+        );
+
+        CrossShardTransfer debited = transfer;
+        if (!debit.transferId().equals(transfer.getId())) {
+            // An earlier attempt of the request already debited the source; carry on with its transfer.
+            debited = databaseShardRouter.read(sourceShard, () -> crossShardTransferRepository.findById(debit.transferId()))
+                    .orElseThrow(() -> new IllegalStateException("Cross-shard transfer " + debit.transferId() + " is missing"));
+            if (debited.getStatus() == CrossShardTransferStatus.COMPLETED) {
+                return debit.sourceAccount();
+            }
+            if (debited.getStatus() == CrossShardTransferStatus.REFUNDED) {
+                throw new ResourceNotFoundException("Account not found");
+            }
+        }
+
+        boolean credited;
+        try {
+            credited = settle(debited);
+        } catch (RuntimeException ex) {
+            logger.warn("Cross-shard transfer {} is debited but not settled yet; recovery will finish it",
+                    debited.getId(), ex);
+            return debit.sourceAccount();
+        }
+        if (!credited) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+        return debit.sourceAccount();
+    }
+
+    /**
+     * Finishes transfers left {@link CrossShardTransferStatus#PENDING} by a failure or a restart. Only
+     * transfers older than {@code app.datasource.shards.recovery-delay-ms} are picked up, leaving
+     * in-flight ones to their request; settling a transfer twice is harmless either way.
+     */
+    @Scheduled(
+            fixedDelayString = "${app.datasource.shards.recovery-interval-ms:5000}",
+            initialDelayString = "${app.datasource.shards.recovery-interval-ms:5000}"
+    )
+    public void recoverPendingTransfers() {
+        if (!databaseShardRouter.isEnabled()) {
+            return;
+        }
+
+        LocalDateTime pendingBefore = LocalDateTime.now().minus(recoveryDelayMs, ChronoUnit.MILLIS);
+        for (int shard = 0; shard < databaseShardRouter.shardCount(); shard++) {
+            List<CrossShardTransfer> pending;
+            try {
+                pending = databaseShardRouter.read(shard, () -> crossShardTransferRepository
+                        .findByStatusAndCreatedAtBeforeOrderByCreatedAt(
+                                CrossShardTransferStatus.PENDING,
+                                pendingBefore,
+                                PageRequest.of(0, recoveryBatchSize)
+                        ));
+            } catch (RuntimeException ex) {
+                logger.warn("Could not read pending cross-shard transfers of shard {}", shard, ex);
+                continue;
+            }
+
+            for (CrossShardTransfer transfer : pending) {
+                try {
+                    boolean credited = settle(transfer);
+                    logger.info("Recovered cross-shard transfer {}: {}", transfer.getId(),
+                            credited ? CrossShardTransferStatus.COMPLETED : CrossShardTransferStatus.REFUNDED);
+                } catch (RuntimeException ex) {
+                    logger.warn("Could not settle cross-shard transfer {}", transfer.getId(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the credit step and closes the transfer on its source shard.
+     *
+     * @return {@code true} if the destination was credited, {@code false} if the transfer was refunded
+     */
+    boolean settle(CrossShardTransfer transfer) {
+        boolean credited = creditDestination(transfer);
+        lockRetryExecutor.executeOnShard(databaseShardRouter.shardOf(transfer.getFromAccountId()), () -> credited
+                ? crossShardTransferRepository.updateStatus(
+                        transfer.getId(), CrossShardTransferStatus.PENDING, CrossShardTransferStatus.COMPLETED)
+                : refund(transfer));
+        return credited;
+    }
+
+    /**
+     * @return {@code false} if the destination account does not exist
+     */
+    private boolean creditDestination(CrossShardTransfer transfer) {
+        try {
+            lockRetryExecutor.executeOnShard(databaseShardRouter.shardOf(transfer.getToAccountId()), () -> credit(transfer));
+            return true;
+        } catch (ResourceNotFoundException ex) {
+            return false;
+        }
+    }
+
+    private AccountResponse debit(CrossShardTransfer transfer) {
+        Long accountId = transfer.getFromAccountId();
+        long amount = transfer.getAmount();
+
+        int debited = bankingMetrics.recordLockWait(
+                BankingMetrics.LOCK_ACCOUNT,
+                () -> accountRepository.debitIfSufficient(accountId, amount)
+        );
+        Account account;
+        if (debited == 0) {
+            account = bankingMetrics.recordLockWait(BankingMetrics.LOCK_ACCOUNT, () -> accountRepository.findByIdForUpdate(accountId))
+                    .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+            balanceShardService.borrow(account, amount);
+            if (account.getBalance() < amount) {
+                throw new InsufficientBalanceException("Insufficient balance");
+            }
+            account.setBalance(Money.subtract(account.getBalance(), amount));
+            account = accountRepository.save(account);
+        } else {
+            account = accountRepository.findById(accountId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+        }
+
+        Transaction transaction = transactionRepository.save(transferTransaction(transfer));
+        transfer.setSourceTransactionId(transaction.getId());
+        crossShardTransferRepository.save(transfer);
+
+        return AccountResponse.builder()
+                .id(account.getId())
+                .userId(account.getUser().getId())
+                .balance(balanceShardService.totalBalance(account))
+                .createdAt(account.getCreatedAt())
+                .build();
+    }
+
+    private Void credit(CrossShardTransfer transfer) {
+        LocalDateTime creditedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        if (crossShardCreditRepository.insertIfAbsent(transfer.getId(), creditedAt) == 0) {
+            return null;
+        }
+
+        creditAccount(transfer.getToAccountId(), transfer.getAmount());
+        transactionRepository.save(transferTransaction(transfer));
+        return null;
+    }
+
+    private int refund(CrossShardTransfer transfer) {
+        int refunded = crossShardTransferRepository.updateStatus(
+                transfer.getId(), CrossShardTransferStatus.PENDING, CrossShardTransferStatus.REFUNDED);
+        if (refunded == 1) {
+            creditAccount(transfer.getFromAccountId(), transfer.getAmount());
+            // The debit row may already have been served in history pages or exports, so it stays.
+            transactionRepository.save(refundTransaction(transfer));
+        }
+        return refunded;
+    }
+
+    private void creditAccount(Long accountId, long amount) {
+        if (balanceShardService.creditIfSharded(accountId, amount)) {
+            return;
+        }
+        int credited = bankingMetrics.recordLockWait(
+                BankingMetrics.LOCK_ACCOUNT,
+                () -> accountRepository.credit(accountId, amount)
+        );
+        if (credited == 0) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+    }
+
+    private static Transaction transferTransaction(CrossShardTransfer transfer) {
+        return Transaction.builder()
+                .fromAccountId(transfer.getFromAccountId())
+                .toAccountId(transfer.getToAccountId())
+                .amount(transfer.getAmount())
+                .type(TransactionType.TRANSFER)
+                .build();
+    }
+
+    /**
+     * The credit returning a refunded transfer's debit. It is recorded as a deposit, which the
+     * {@code type} column of existing databases already accepts.
+     */
+    private static Transaction refundTransaction(CrossShardTransfer transfer) {
+        return Transaction.builder()
+                .fromAccountId(null)
+                .toAccountId(transfer.getFromAccountId())
+                .amount(transfer.getAmount())
+                .type(TransactionType.DEPOSIT)
+                .build();
+    }
+
+    /**
+     * Result of the debit step, kept by {@link ShardStepFence} for retries of the same request.
+     */
+    record CrossShardDebit(String transferId, AccountResponse sourceAccount) {
+    }
+}
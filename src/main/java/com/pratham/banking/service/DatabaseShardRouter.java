@@ -0,0 +1,156 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Places accounts on database shards and runs work against the shard that owns an account.
+ *
+ * <p>With {@code app.datasource.shards.enabled=true}, shard {@code 0} is the {@code spring.datasource}
+ * database and shards {@code 1..n} are {@code app.datasource.shards.urls}. Shard {@code 0} is also the
+ * home of everything that is not per account: users, idempotency records and checkpoints. Account
+ * and transaction ids are split into ranges of {@code app.datasource.shards.id-range}, shard {@code k}
+ * issuing the ids of range {@code k}. The owning shard of an account follows from its id alone,
+ * existing accounts stay on shard {@code 0}, and transaction ids stay unique across shards even though
+ * Hibernate hands them out from one in-memory pool. New accounts go to shard
+ * {@code userId mod shardCount}, keeping a user's accounts together.
+ *
+ * <p>The shard is bound to the calling thread and picked up by the routing data source when a
+ * transaction takes its connection. A transaction stays on one shard, so {@link #read} and
+ * {@link #write} start a new one, suspending any transaction the caller holds. Without shards both
+ * simply run the work in a transaction, joining the caller's.
+ */
+@Component
+public class DatabaseShardRouter {
+
+    public static final int HOME_SHARD = 0;
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final int shardCount;
+    private final long idRange;
+    private final TransactionTemplate readTemplate;
+    private final TransactionTemplate writeTemplate;
+
+    public DatabaseShardRouter(PlatformTransactionManager transactionManager,
+                               @Value("${app.datasource.shards.enabled:false}") boolean enabled,
+                               @Value("${app.datasource.shards.urls:}") List<String> shardUrls,
+                               @Value("${app.datasource.shards.id-range:1000000000000}") long idRange) {
+        if (idRange < 1) {
+            throw new IllegalArgumentException("app.datasource.shards.id-range must be positive");
+        }
+        this.enabled = enabled;
+        this.shardCount = enabled ? 1 + shardUrls.size() : 1;
+        this.idRange = idRange;
+
+        int propagation = enabled
+                ? TransactionDefinition.PROPAGATION_REQUIRES_NEW
+                : TransactionDefinition.PROPAGATION_REQUIRED;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setPropagationBehavior(propagation);
+        this.readTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.writeTemplate.setPropagationBehavior(propagation);
+    }
+
+    /**
+     * Returns the shard bound to the current thread, or {@code null} for the home shard.
+     */
+    public static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Returns the shard holding the account.
+     *
+     * @throws ResourceNotFoundException if the id belongs to no configured shard
+     */
+    public int shardOf(Long accountId) {
+        if (!enabled) {
+            return HOME_SHARD;
+        }
+        if (!hasShard(accountId)) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+        return (int) ((accountId - 1) / idRange);
+    }
+
+    /**
+     * Returns whether the id falls into the range of a configured shard; always true without shards.
+     */
+    public boolean hasShard(Long accountId) {
+        if (!enabled) {
+            return accountId != null;
+        }
+        return accountId != null && accountId > 0 && (accountId - 1) / idRange < shardCount;
+    }
+
+    /**
+     * Returns the shard on which a new account of the user is created.
+     */
+    public int shardForNewAccount(Long userId) {
+        return enabled ? (int) Math.floorMod(userId, (long) shardCount) : HOME_SHARD;
+    }
+
+    /**
+     * Returns the first account or transaction id the shard issues.
+     */
+    public long firstId(int shard) {
+        return shard * idRange + 1;
+    }
+
+    /**
+     * Runs {@code action} in a read-only transaction on the shard.
+     */
+    public <T> T read(int shard, Supplier<T> action) {
+        return inTransaction(readTemplate, shard, action);
+    }
+
+    /**
+     * Runs {@code action} in a read-write transaction on the shard.
+     */
+    public <T> T write(int shard, Supplier<T> action) {
+        return inTransaction(writeTemplate, shard, action);
+    }
+
+    /**
+     * Binds the shard to the current thread while {@code action} runs. Only connections taken inside
+     * {@code action} go to the shard; the caller must not be inside a transaction on another shard.
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    private <T> T inTransaction(TransactionTemplate template, int shard, Supplier<T> action) {
+        return onShard(shard, () -> template.execute(status -> action.get()));
+    }
+}
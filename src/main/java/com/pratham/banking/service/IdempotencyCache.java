@@ -0,0 +1,54 @@
+package com.pratham.banking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, TTL-aware in-process front cache for committed idempotency records.
+ *
+ * <p>Entries hold the decoded response, so a retried request is answered without a database read
+ * or any deserialization. The database remains the source of truth across instances; this cache
+ * only short-circuits repeats that reach the same instance.
+ */
+@Component
+public class IdempotencyCache {
+
+    private final Map<String, Entry> entries;
+
+    public IdempotencyCache(@Value("${app.idempotency.cache.max-entries:10000}") int maxEntries) {
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Returns the cached entry for the key, dropping it if it was created before {@code expirationThreshold}.
+     */
+    public Entry get(String key, LocalDateTime expirationThreshold) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.createdAt().isBefore(expirationThreshold)) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    public void put(String key, String requestHash, Object response, LocalDateTime createdAt) {
+        entries.put(key, new Entry(requestHash, response, createdAt));
+    }
+
+    public void evict(String key) {
+        entries.remove(key);
+    }
+
+    public record Entry(String requestHash, Object response, LocalDateTime createdAt) {
+    }
+}
@@ -0,0 +1,213 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.repository.IdempotencyRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Removes expired idempotency records in the background so the table and its indexes stay bounded.
+ *
+ * <p>By default expired rows are deleted in small batches, oldest first, each batch in its own
+ * transaction. With {@code app.idempotency.partitioning.enabled} on PostgreSQL the table is range
+ * partitioned by day on {@code created_at}; expiry then drops whole partitions and partitions for the
+ * next few days are created ahead of time. Instances change the partition layout one at a time, under a
+ * transaction-scoped advisory lock.
+ */
+@Service
+public class IdempotencyRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyRetentionService.class);
+
+    private static final String TABLE = "idempotency_records";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final String PARTITION_LOCK = TABLE + "#partitions";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final int PARTITIONS_AHEAD = 3;
+
+    private final IdempotencyRepository idempotencyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration expiration;
+    private final int batchSize;
+    private final boolean partitioningEnabled;
+    private volatile boolean partitioned;
+
+    public IdempotencyRetentionService(IdempotencyRepository idempotencyRepository,
+                                       JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.idempotency.expiration-hours:24}") long expirationHours,
+                                       @Value("${app.idempotency.purge.batch-size:1000}") int batchSize,
+                                       @Value("${app.idempotency.partitioning.enabled:false}") boolean partitioningEnabled) {
+        this.idempotencyRepository = idempotencyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.expiration = Duration.ofHours(expirationHours);
+        this.batchSize = batchSize;
+        this.partitioningEnabled = partitioningEnabled;
+    }
+
+    /**
+     * Whether the table is partitioned, in which case the primary key no longer covers {@code key} alone.
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    @PostConstruct
+    public void preparePartitions() {
+        if (!partitioningEnabled) {
+            return;
+        }
+
+        if (!isPostgreSql()) {
+            logger.warn("Idempotency partitioning requires PostgreSQL; falling back to batched deletes");
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Instances starting together wait here; the loser then finds the table already converted.
+            idempotencyRepository.lockKey(PARTITION_LOCK);
+            if (!isPartitionedTable()) {
+                convertToPartitionedTable();
+            }
+            createUpcomingPartitions();
+        });
+        partitioned = true;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.idempotency.purge.interval-ms:60000}",
+            initialDelayString = "${app.idempotency.purge.interval-ms:60000}"
+    )
+    public void purgeExpiredRecords() {
+        LocalDateTime expirationThreshold = LocalDateTime.now().minus(expiration);
+
+        if (partitioned) {
+            transactionTemplate.executeWithoutResult(status -> {
+                idempotencyRepository.lockKey(PARTITION_LOCK);
+                createUpcomingPartitions();
+                dropExpiredPartitions(expirationThreshold);
+            });
+            return;
+        }
+
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status ->
+                    idempotencyRepository.deleteExpiredBatch(expirationThreshold, batchSize));
+            purged += deleted;
+        } while (deleted == batchSize);
+
+        if (purged > 0) {
+            logger.info("Purged {} expired idempotency records", purged);
+        }
+    }
+
+    private boolean isPostgreSql() {
+        String productName = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()
+        );
+        return "PostgreSQL".equalsIgnoreCase(productName);
+    }
+
+    private boolean isPartitionedTable() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid "
+                        + "WHERE c.relname = ? AND pg_table_is_visible(c.oid)",
+                Integer.class,
+                TABLE
+        );
+        return count != null && count > 0;
+    }
+
+    /**
+     * Replaces the plain table created by Hibernate with a partitioned copy holding the unexpired rows.
+     * The primary key becomes {@code (key, created_at)}, since PostgreSQL requires the partition column
+     * in every unique constraint; claims compensate with an advisory lock per key.
+     */
+    private void convertToPartitionedTable() {
+        String legacyTable = TABLE + "_unpartitioned";
+        LocalDateTime expirationThreshold = LocalDateTime.now().minus(expiration);
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + legacyTable);
+        jdbcTemplate.execute("ALTER INDEX IF EXISTS " + TABLE + "_pkey RENAME TO " + legacyTable + "_pkey");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_idempotency_records_created_at");
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + legacyTable + " INCLUDING DEFAULTS) "
+                + "PARTITION BY RANGE (created_at)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (key, created_at)");
+        jdbcTemplate.execute("CREATE INDEX idx_idempotency_records_created_at ON " + TABLE + " (created_at)");
+
+        LocalDateTime oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM " + legacyTable + " WHERE created_at >= ?",
+                LocalDateTime.class,
+                expirationThreshold
+        );
+        if (oldest != null) {
+            for (LocalDate day = oldest.toLocalDate(); day.isBefore(LocalDate.now()); day = day.plusDays(1)) {
+                createPartition(day);
+            }
+        }
+        createUpcomingPartitions();
+
+        int copied = jdbcTemplate.update(
+                "INSERT INTO " + TABLE + " SELECT * FROM " + legacyTable + " WHERE created_at >= ?",
+                expirationThreshold
+        );
+        jdbcTemplate.execute("DROP TABLE " + legacyTable);
+        logger.info("Partitioned {} by day, keeping {} unexpired records", TABLE, copied);
+    }
+
+    private void createUpcomingPartitions() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i <= PARTITIONS_AHEAD; i++) {
+            createPartition(today.plusDays(i));
+        }
+    }
+
+    private void createPartition(LocalDate day) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + PARTITION_PREFIX + day.format(PARTITION_SUFFIX)
+                + " PARTITION OF " + TABLE
+                + " FOR VALUES FROM ('" + day.atStartOfDay() + "') TO ('" + day.plusDays(1).atStartOfDay() + "')");
+    }
+
+    /**
+     * Drops every daily partition whose whole range lies before the expiration threshold.
+     */
+    private void dropExpiredPartitions(LocalDateTime expirationThreshold) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent "
+                        + "WHERE p.relname = ? AND pg_table_is_visible(p.oid)",
+                String.class,
+                TABLE
+        );
+
+        for (String partition : partitions) {
+            if (!partition.startsWith(PARTITION_PREFIX)) {
+                continue;
+            }
+
+            LocalDate day = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+            if (!day.plusDays(1).atStartOfDay().isAfter(expirationThreshold)) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                logger.info("Dropped expired idempotency partition {}", partition);
+            }
+        }
+    }
+}
@@ -3,80 +3,340 @@ package com.pratham.banking.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pratham.banking.entity.IdempotencyRecord;
+import com.pratham.banking.entity.IdempotencyStatus;
 import com.pratham.banking.exception.IdempotencyConflictException;
+import com.pratham.banking.exception.IdempotencyInProgressException;
 import com.pratham.banking.repository.IdempotencyRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * Service for managing idempotency records and ensuring retry-safe transfer operations.
+ *
+ * <p>A key is claimed before the operation runs: an {@link IdempotencyStatus#IN_PROGRESS} record is
+ * committed in its own short transaction, the operation then runs and marks the record completed in
+ * the same transaction as its own writes, and a failed operation releases the claim. With database
+ * shards the writes commit on the account's shard instead, fenced by {@link ShardStepFence} so that a
+ * retry after a failed completion does not repeat them. Duplicates on the same instance wait for the
+ * in-flight result; duplicates that find another instance's claim fail fast with
+ * {@link IdempotencyInProgressException} instead of repeating the locking work.
+ *
+ * <p>Lookups go to {@link IdempotencyCache} first and only fall back to the database on a miss.
+ * Responses are stored as {@code <class name>\n<json payload>}, so a replay needs one JSON parse;
+ * {@link IdempotentHttpResponse} payloads skip JSON entirely. Records written in the older
+ * JSON-envelope format are still readable.
+ *
+ * <p>Keys used to be stored as sent by the client; they are now scoped as {@code <username>:<key>}.
+ * {@link #findUnscopedResponse} lets callers still replay a record stored under the bare key, for
+ * {@code app.idempotency.unscoped-fallback-hours} after the instance starts.
+ *
+ * <p>{@link #execute} manages its own transactions and must not be called inside an existing one.
  */
 @Service
 public class IdempotencyService {
 
-    private static final long EXPIRATION_HOURS = 24;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final char TYPE_SEPARATOR = '\n';
+    private static final String IN_PROGRESS_MESSAGE = "A request with this idempotency key is already in progress";
 
     private final IdempotencyRepository idempotencyRepository;
+    private final IdempotencyCache idempotencyCache;
+    private final IdempotencyRetentionService idempotencyRetentionService;
+    private final BankingMetrics bankingMetrics;
     private final ObjectMapper objectMapper;
+    private final LockRetryExecutor lockRetryExecutor;
+    private final ShardStepFence shardStepFence;
+    private final TransactionTemplate claimTransactionTemplate;
+    private final Duration expiration;
+    private final Duration inFlightWait;
+    private final Duration staleClaimTimeout;
+    private final Instant unscopedFallbackUntil;
+    private final Map<String, Class<?>> responseTypes = new ConcurrentHashMap<>();
+    private final Map<String, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
 
-    public IdempotencyService(IdempotencyRepository idempotencyRepository, ObjectMapper objectMapper) {
+    public IdempotencyService(IdempotencyRepository idempotencyRepository,
+                              IdempotencyCache idempotencyCache,
+                              IdempotencyRetentionService idempotencyRetentionService,
+                              BankingMetrics bankingMetrics,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              LockRetryExecutor lockRetryExecutor,
+                              ShardStepFence shardStepFence,
+                              @Value("${app.idempotency.expiration-hours:24}") long expirationHours,
+                              @Value("${app.idempotency.in-flight-wait-ms:5000}") long inFlightWaitMs,
+                              @Value("${app.idempotency.stale-claim-seconds:300}") long staleClaimSeconds,
+                              @Value("${app.idempotency.unscoped-fallback-hours:24}") long unscopedFallbackHours) {
         this.idempotencyRepository = idempotencyRepository;
+        this.idempotencyCache = idempotencyCache;
+        this.idempotencyRetentionService = idempotencyRetentionService;
+        this.bankingMetrics = bankingMetrics;
         this.objectMapper = objectMapper;
+        this.lockRetryExecutor = lockRetryExecutor;
+        this.shardStepFence = shardStepFence;
+        this.claimTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.claimTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.expiration = Duration.ofHours(expirationHours);
+        this.inFlightWait = Duration.ofMillis(inFlightWaitMs);
+        this.staleClaimTimeout = Duration.ofSeconds(staleClaimSeconds);
+        this.unscopedFallbackUntil = Instant.now().plus(Duration.ofHours(unscopedFallbackHours));
     }
 
-    @Transactional
+    /**
+     * Whether {@link #findUnscopedResponse} may still find anything, so callers can skip hashing the
+     * request once the fallback window has passed.
+     */
+    public boolean isUnscopedFallbackActive() {
+        return Instant.now().isBefore(unscopedFallbackUntil);
+    }
+
+    /**
+     * Looks up the response of a request completed under the bare client key, before keys were scoped
+     * to the user. A bare key may belong to any user, so a record whose request hash differs is ignored
+     * rather than reported as a conflict; callers must have checked that the user may see the response.
+     *
+     * @return the stored response, or {@code null} if there is no unexpired completed record of the
+     * same request
+     */
+    public <T> T findUnscopedResponse(String key, String requestHash, Class<T> responseType) {
+        if (!isUnscopedFallbackActive()) {
+            return null;
+        }
+
+        IdempotencyRecord record = idempotencyRepository.findById(key).orElse(null);
+        if (record == null
+                || record.isInProgress()
+                || !record.getRequestHash().equals(requestHash)
+                || record.getCreatedAt().isBefore(LocalDateTime.now().minus(expiration))) {
+            return null;
+        }
+
+        Object response = deserializeResponse(record.getResponseBody());
+        if (!responseType.isInstance(response)) {
+            return null;
+        }
+        bankingMetrics.recordIdempotency(BankingMetrics.IDEMPOTENCY_UNSCOPED_REPLAY);
+        return responseType.cast(response);
+    }
+
+    /**
+     * Runs {@code action} at most once per key, replaying the stored response for retries.
+     *
+     * @param key         the client-supplied idempotency key
+     * @param requestHash hash of the request payload, used to reject key reuse with a different request
+     * @param action      the operation; it runs inside a transaction started here and is run again if
+     *                    that transaction fails on a lock conflict
+     * @return the operation's response, or the stored response of an earlier identical request
+     */
     public <T> T execute(String key, String requestHash, Supplier<T> action) {
-        IdempotencyRecord existingRecord = idempotencyRepository.findById(key).orElse(null);
+        return executeWithRecorder(key, requestHash, recorder -> lockRetryExecutor.execute(() -> recorder.apply(action.get())));
+    }
 
-        if (existingRecord != null) {
-            LocalDateTime expirationThreshold = LocalDateTime.now().minusHours(EXPIRATION_HOURS);
-            if (existingRecord.getCreatedAt().isBefore(expirationThreshold)) {
-                idempotencyRepository.delete(existingRecord);
+    /**
+     * Like {@link #execute}, for an operation that runs in a transaction it manages itself, such as a
+     * {@link TransferPipeline} batch. The operation is given a recorder that it must apply to its result
+     * inside that transaction. The recorder stores the response, or throws
+     * {@link IdempotencyInProgressException} if the claim was lost, in which case the operation's
+     * writes must not commit.
+     *
+     * @param operation receives the recorder and returns the recorded result
+     */
+    public <T> T executeWithRecorder(String key, String requestHash, Function<UnaryOperator<T>, T> operation) {
+        try {
+            return executeWithRetries(key, requestHash, operation);
+        } catch (RuntimeException ex) {
+            bankingMetrics.recordIdempotencyFailure(ex);
+            throw ex;
+        }
+    }
+
+    private <T> T executeWithRetries(String key, String requestHash, Function<UnaryOperator<T>, T> operation) {
+        for (int attempt = 1; ; attempt++) {
+            LocalDateTime expirationThreshold = LocalDateTime.now().minus(expiration);
+
+            IdempotencyCache.Entry cachedEntry = idempotencyCache.get(key, expirationThreshold);
+            if (cachedEntry != null) {
+                return replay(cachedEntry.requestHash(), requestHash, cachedEntry.response(),
+                        BankingMetrics.IDEMPOTENCY_CACHE_REPLAY);
+            }
+
+            InFlightRequest inFlightRequest = new InFlightRequest(requestHash, new CompletableFuture<>());
+            InFlightRequest existingRequest = inFlightRequests.putIfAbsent(key, inFlightRequest);
+            if (existingRequest != null) {
+                Object response = awaitInFlight(existingRequest, requestHash);
+                if (response != null) {
+                    return replay(existingRequest.requestHash(), requestHash, response,
+                            BankingMetrics.IDEMPOTENCY_IN_FLIGHT_REPLAY);
+                }
             } else {
-                if (!existingRecord.getRequestHash().equals(requestHash)) {
-                    throw new IdempotencyConflictException("Idempotency key reuse with different request");
+                try {
+                    return executeClaimed(key, requestHash, operation, expirationThreshold, inFlightRequest);
+                } catch (ConcurrentClaimException ex) {
+                    // Another instance inserted a claim for the same key concurrently; re-read it.
+                } finally {
+                    inFlightRequests.remove(key, inFlightRequest);
                 }
+            }
 
-                return deserializeResponse(existingRecord.getResponseBody());
+            if (attempt >= MAX_ATTEMPTS) {
+                throw new IdempotencyInProgressException(IN_PROGRESS_MESSAGE);
             }
         }
+    }
 
-        T response = action.get();
-        String responseBody = serializeResponse(response);
+    private <T> T executeClaimed(String key,
+                                 String requestHash,
+                                 Function<UnaryOperator<T>, T> operation,
+                                 LocalDateTime expirationThreshold,
+                                 InFlightRequest inFlightRequest) {
+        LocalDateTime claimedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        IdempotencyRecord completedRecord;
+        try {
+            completedRecord = claim(key, requestHash, expirationThreshold, claimedAt);
+        } catch (DataIntegrityViolationException ex) {
+            inFlightRequest.response().completeExceptionally(ex);
+            throw new ConcurrentClaimException();
+        } catch (RuntimeException ex) {
+            inFlightRequest.response().completeExceptionally(ex);
+            throw ex;
+        }
 
-        IdempotencyRecord newRecord = IdempotencyRecord.builder()
-                .key(key)
-                .requestHash(requestHash)
-                .responseBody(responseBody)
-                .build();
+        if (completedRecord != null) {
+            T response = deserializeResponse(completedRecord.getResponseBody());
+            idempotencyCache.put(key, completedRecord.getRequestHash(), response, completedRecord.getCreatedAt());
+            inFlightRequest.response().complete(response);
+            return replay(completedRecord.getRequestHash(), requestHash, response,
+                    BankingMetrics.IDEMPOTENCY_STORE_REPLAY);
+        }
 
+        T response;
         try {
-            idempotencyRepository.save(newRecord);
-        } catch (DataIntegrityViolationException ex) {
-            IdempotencyRecord record = idempotencyRepository.findById(key)
-                    .orElseThrow(() -> new IdempotencyConflictException("Idempotency key reuse with different request"));
+            response = shardStepFence.withKey(key, () -> operation.apply(result -> {
+                if (idempotencyRepository.complete(key, claimedAt, serializeResponse(result)) == 0) {
+                    throw new IdempotencyInProgressException(IN_PROGRESS_MESSAGE);
+                }
+                return result;
+            }));
+        } catch (RuntimeException ex) {
+            releaseClaim(key, claimedAt);
+            inFlightRequest.response().completeExceptionally(ex);
+            throw ex;
+        }
+
+        idempotencyCache.put(key, requestHash, response, claimedAt);
+        bankingMetrics.recordIdempotency(BankingMetrics.IDEMPOTENCY_EXECUTED);
+        inFlightRequest.response().complete(response);
+        return response;
+    }
+
+    /**
+     * Claims the key in its own committed transaction.
+     *
+     * @return {@code null} if the caller now owns the claim, or the completed record to replay
+     * @throws IdempotencyInProgressException if another request holds a live claim on the key
+     */
+    private IdempotencyRecord claim(String key,
+                                    String requestHash,
+                                    LocalDateTime expirationThreshold,
+                                    LocalDateTime claimedAt) {
+        return claimTransactionTemplate.execute(status -> {
+            if (idempotencyRetentionService.isPartitioned()) {
+                idempotencyRepository.lockKey(key);
+            }
+
+            IdempotencyRecord existingRecord = idempotencyRepository.findById(key).orElse(null);
 
-            if (!record.getRequestHash().equals(requestHash)) {
+            if (existingRecord != null && existingRecord.getCreatedAt().isBefore(expirationThreshold)) {
+                idempotencyRepository.delete(existingRecord);
+                idempotencyRepository.flush();
+                existingRecord = null;
+            }
+
+            if (existingRecord == null) {
+                idempotencyRepository.saveAndFlush(IdempotencyRecord.builder()
+                        .key(key)
+                        .requestHash(requestHash)
+                        .responseBody("")
+                        .status(IdempotencyStatus.IN_PROGRESS)
+                        .createdAt(claimedAt)
+                        .build());
+                return null;
+            }
+
+            if (!existingRecord.getRequestHash().equals(requestHash)) {
                 throw new IdempotencyConflictException("Idempotency key reuse with different request");
             }
 
-            return deserializeResponse(record.getResponseBody());
+            if (existingRecord.isInProgress()) {
+                LocalDateTime staleBefore = claimedAt.minus(staleClaimTimeout);
+                if (idempotencyRepository.takeOverStaleClaim(key, staleBefore, claimedAt) == 1) {
+                    return null;
+                }
+                throw new IdempotencyInProgressException(IN_PROGRESS_MESSAGE);
+            }
+
+            return existingRecord;
+        });
+    }
+
+    private void releaseClaim(String key, LocalDateTime claimedAt) {
+        claimTransactionTemplate.executeWithoutResult(status -> idempotencyRepository.releaseClaim(key, claimedAt));
+    }
+
+    /**
+     * Waits for a same-instance request with the same key.
+     *
+     * @return the response, or {@code null} if the in-flight request failed and the caller should retry
+     */
+    private Object awaitInFlight(InFlightRequest inFlightRequest, String requestHash) {
+        if (!inFlightRequest.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException("Idempotency key reuse with different request");
         }
 
-        return response;
+        try {
+            return inFlightRequest.response().get(inFlightWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            return null;
+        } catch (TimeoutException ex) {
+            throw new IdempotencyInProgressException(IN_PROGRESS_MESSAGE);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyInProgressException(IN_PROGRESS_MESSAGE);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T replay(String storedRequestHash, String requestHash, Object response, String result) {
+        if (!storedRequestHash.equals(requestHash)) {
+            throw new IdempotencyConflictException("Idempotency key reuse with different request");
+        }
+        bankingMetrics.recordIdempotency(result);
+        return (T) response;
     }
 
     private <T> String serializeResponse(T response) {
         try {
-            CachedResponse cachedResponse = CachedResponse.builder()
-                    .className(response.getClass().getName())
-                    .payload(objectMapper.writeValueAsString(response))
-                    .build();
-            return objectMapper.writeValueAsString(cachedResponse);
+            String payload = response instanceof IdempotentHttpResponse httpResponse
+                    ? httpResponse.encode()
+                    : objectMapper.writeValueAsString(response);
+            return response.getClass().getName() + TYPE_SEPARATOR + payload;
         } catch (JsonProcessingException ex) {
             throw new IllegalStateException("Failed to serialize idempotency response", ex);
         }
@@ -85,20 +345,55 @@ public class IdempotencyService {
     @SuppressWarnings("unchecked")
     private <T> T deserializeResponse(String responseBody) {
         try {
-            CachedResponse cachedResponse = objectMapper.readValue(responseBody, CachedResponse.class);
-            Class<?> responseClass = Class.forName(cachedResponse.getClassName());
-            Object response = objectMapper.readValue(cachedResponse.getPayload(), responseClass);
-            return (T) response;
+            int separatorIndex = responseBody.indexOf(TYPE_SEPARATOR);
+            if (separatorIndex < 0) {
+                return deserializeLegacyResponse(responseBody);
+            }
+
+            Class<?> responseClass = resolveResponseType(responseBody.substring(0, separatorIndex));
+            String payload = responseBody.substring(separatorIndex + 1);
+            if (responseClass == IdempotentHttpResponse.class) {
+                return (T) IdempotentHttpResponse.decode(payload);
+            }
+            return (T) objectMapper.readValue(payload, responseClass);
         } catch (JsonProcessingException | ClassNotFoundException ex) {
             throw new IllegalStateException("Failed to deserialize idempotency response", ex);
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private <T> T deserializeLegacyResponse(String responseBody) throws JsonProcessingException, ClassNotFoundException {
+        CachedResponse cachedResponse = objectMapper.readValue(responseBody, CachedResponse.class);
+        Class<?> responseClass = resolveResponseType(cachedResponse.getClassName());
+        return (T) objectMapper.readValue(cachedResponse.getPayload(), responseClass);
+    }
+
+    private Class<?> resolveResponseType(String className) throws ClassNotFoundException {
+        Class<?> responseClass = responseTypes.get(className);
+        if (responseClass == null) {
+            responseClass = Class.forName(className);
+            responseTypes.put(className, responseClass);
+        }
+        return responseClass;
+    }
+
+    private static class ConcurrentClaimException extends RuntimeException {
+
+        ConcurrentClaimException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private record InFlightRequest(String requestHash, CompletableFuture<Object> response) {
+    }
+
+    /**
+     * Envelope used by records written before the flat {@code <class name>\n<json>} encoding.
+     */
     @lombok.Getter
     @lombok.Setter
     @lombok.NoArgsConstructor
     @lombok.AllArgsConstructor
-    @lombok.Builder
     private static class CachedResponse {
         private String className;
         private String payload;
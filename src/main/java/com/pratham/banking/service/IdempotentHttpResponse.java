@@ -0,0 +1,36 @@
+package com.pratham.banking.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Status, content type and raw body bytes of a completed HTTP response, stored under an idempotency key
+ * and written back verbatim on replay.
+ *
+ * <p>The encoded form is {@code <status>\n<content type>\n<body>}, with the body bytes mapped one to one
+ * onto ISO-8859-1 characters so any byte sequence survives the round trip through a text column.
+ */
+public record IdempotentHttpResponse(int status, String contentType, byte[] body) {
+
+    private static final char SEPARATOR = '\n';
+
+    public String encode() {
+        return String.valueOf(status) + SEPARATOR
+                + (contentType == null ? "" : contentType) + SEPARATOR
+                + new String(body, StandardCharsets.ISO_8859_1);
+    }
+
+    public static IdempotentHttpResponse decode(String encoded) {
+        int statusEnd = encoded.indexOf(SEPARATOR);
+        int contentTypeEnd = encoded.indexOf(SEPARATOR, statusEnd + 1);
+        if (statusEnd < 0 || contentTypeEnd < 0) {
+            throw new IllegalStateException("Malformed stored HTTP response");
+        }
+
+        String contentType = encoded.substring(statusEnd + 1, contentTypeEnd);
+        return new IdempotentHttpResponse(
+                Integer.parseInt(encoded.substring(0, statusEnd)),
+                contentType.isEmpty() ? null : contentType,
+                encoded.substring(contentTypeEnd + 1).getBytes(StandardCharsets.ISO_8859_1)
+        );
+    }
+}
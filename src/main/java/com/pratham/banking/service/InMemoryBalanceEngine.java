@@ -0,0 +1,601 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.entity.LedgerCheckpoint;
+import com.pratham.banking.entity.Money;
+import com.pratham.banking.entity.Transaction;
+import com.pratham.banking.entity.TransactionType;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import com.pratham.banking.exception.ServerBusyException;
+import com.pratham.banking.repository.LedgerCheckpointRepository;
+import com.pratham.banking.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Balance engine used when {@code app.transfer.engine=IN_MEMORY}.
+ *
+ * <p>Accounts are partitioned by id onto {@code app.transfer.in-memory.lanes} single-threaded
+ * {@link BalanceLane lanes} that hold balances in primitive arrays. Every change is appended to one
+ * memory-mapped {@link LedgerJournal} under {@code app.transfer.in-memory.journal-dir}, whose group
+ * commit makes the concurrent changes of all lanes durable with a shared fsync rather than one
+ * database commit per request. The ledger is the source of truth while the engine runs; the
+ * database is one of its consumers, following it in batches and committing each batch together with
+ * the ledger position it reached, so reads served from the database lag by about
+ * {@code flush-interval-ms}. Other consumers can follow the ledger with {@link #openLedgerReader}.
+ *
+ * <p>A transfer between lanes is a two-step hand-off: the source lane records the debit, then the
+ * destination lane records the credit, or sends a refund back when the destination does not exist.
+ * On start the engine settles every debit without its credit or refund and writes the records past
+ * the database checkpoint.
+ *
+ * <p>Ledger records are durable before the idempotency record of the request is completed. Commands
+ * submitted during an idempotent request are therefore kept by key and step until the request's
+ * transaction commits, and a retry after a failed completion waits for the original command instead
+ * of submitting it again. The engine runs on a single instance, so this in-process fence covers every
+ * retry except one after a crash between the ledger write and the completion.
+ */
+@Service
+public class InMemoryBalanceEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryBalanceEngine.class);
+
+    private static final String DATABASE_CONSUMER = "database";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionRepository transactionRepository;
+    private final LedgerCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final boolean shardingEnabled;
+    private final boolean databaseShardsEnabled;
+    private final int laneCount;
+    private final int queueCapacity;
+    private final int maxBatchSize;
+    private final Path journalDirectory;
+    private final boolean fsync;
+    private final long segmentBytes;
+    private final long groupCommitWindowMicros;
+    private final int flushBatchSize;
+    private final long requestTimeoutMs;
+    private final Duration fenceExpiration;
+
+    private final Object flushLock = new Object();
+    private final Set<Long> residentAccounts = ConcurrentHashMap.newKeySet();
+    private final Map<Long, BalanceSnapshot> stagedAccounts = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Long> openTransfers = new ConcurrentSkipListSet<>();
+    private final AtomicInteger transfersOpening = new AtomicInteger();
+    private final Map<String, FencedCommand> fencedCommands = new ConcurrentHashMap<>();
+    private LedgerJournal ledger;
+    private long databasePosition;
+    private BalanceLane[] lanes;
+
+    public InMemoryBalanceEngine(JdbcTemplate jdbcTemplate,
+                                 TransactionRepository transactionRepository,
+                                 LedgerCheckpointRepository checkpointRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.transfer.engine:LOCKING}") TransferEngine transferEngine,
+                                 @Value("${app.account.sharding.enabled:false}") boolean shardingEnabled,
+                                 @Value("${app.datasource.shards.enabled:false}") boolean databaseShardsEnabled,
+                                 @Value("${app.transfer.in-memory.lanes:4}") int laneCount,
+                                 @Value("${app.transfer.in-memory.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${app.transfer.in-memory.max-batch-size:1024}") int maxBatchSize,
+                                 @Value("${app.transfer.in-memory.journal-dir:data/journal}") String journalDirectory,
+                                 @Value("${app.transfer.in-memory.fsync:true}") boolean fsync,
+                                 @Value("${app.transfer.in-memory.segment-size-mb:64}") long segmentSizeMb,
+                                 @Value("${app.transfer.in-memory.group-commit-window-us:0}") long groupCommitWindowMicros,
+                                 @Value("${app.transfer.in-memory.flush-batch-size:5000}") int flushBatchSize,
+                                 @Value("${app.transfer.in-memory.request-timeout-ms:10000}") long requestTimeoutMs,
+                                 @Value("${app.idempotency.expiration-hours:24}") long idempotencyExpirationHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionRepository = transactionRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = transferEngine == TransferEngine.IN_MEMORY;
+        this.shardingEnabled = shardingEnabled;
+        this.databaseShardsEnabled = databaseShardsEnabled;
+        this.laneCount = Math.max(1, laneCount);
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.journalDirectory = Paths.get(journalDirectory);
+        this.fsync = fsync;
+        this.segmentBytes = Math.max(1, segmentSizeMb) * 1024 * 1024;
+        this.groupCommitWindowMicros = groupCommitWindowMicros;
+        this.flushBatchSize = Math.max(1, flushBatchSize);
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.fenceExpiration = Duration.ofHours(idempotencyExpirationHours);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (shardingEnabled) {
+            throw new IllegalStateException("The IN_MEMORY transfer engine does not support account sharding");
+        }
+        if (databaseShardsEnabled) {
+            throw new IllegalStateException("The IN_MEMORY transfer engine does not support database shards");
+        }
+
+        recover();
+
+        lanes = new BalanceLane[laneCount];
+        for (int lane = 0; lane < laneCount; lane++) {
+            lanes[lane] = new BalanceLane(lane, this, ledger, queueCapacity, maxBatchSize);
+        }
+        for (BalanceLane lane : lanes) {
+            lane.start();
+        }
+        logger.info("In-memory balance engine started with {} lanes, journaling to {}", laneCount, journalDirectory);
+    }
+
+    /**
+     * Lets every lane finish its queued commands, closes the ledger and writes the remaining records to
+     * the database.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (lanes == null) {
+            return;
+        }
+        for (BalanceLane lane : lanes) {
+            lane.stop();
+        }
+        ledger.close();
+        while (flushToDatabase() > 0) {
+            // Keep flushing until the backlog is written.
+        }
+    }
+
+    public BalanceSnapshot getAccount(Long accountId) {
+        stage(accountId);
+        return await(submit(LaneCommand.of(LaneCommand.Kind.BALANCE, accountId, 0, 0)));
+    }
+
+    public BalanceSnapshot deposit(Long accountId, long amount) {
+        requireNonNegative(amount);
+        stage(accountId);
+        return await(submitOnce("deposit", () -> LaneCommand.of(LaneCommand.Kind.DEPOSIT, accountId, 0, amount)));
+    }
+
+    public BalanceSnapshot withdraw(Long accountId, long amount) {
+        requireNonNegative(amount);
+        stage(accountId);
+        return await(submitOnce("withdraw", () -> LaneCommand.of(LaneCommand.Kind.WITHDRAW, accountId, 0, amount)));
+    }
+
+    public BalanceSnapshot transfer(Long fromAccountId, Long toAccountId, long amount) {
+        return await(submitTransfer(fromAccountId, toAccountId, amount, "transfer"));
+    }
+
+    /**
+     * Queues a transfer on the source account's lane without waiting for it.
+     *
+     * @param step names the transfer within the current idempotent request; see {@link ShardStepFence}
+     * @return completed with the source account after the transfer
+     */
+    public CompletableFuture<BalanceSnapshot> submitTransfer(Long fromAccountId, Long toAccountId, long amount, String step) {
+        requireNonNegative(amount);
+        stage(fromAccountId);
+        stage(toAccountId);
+        return submitOnce(step, () -> LaneCommand.of(LaneCommand.Kind.TRANSFER, fromAccountId, toAccountId, amount));
+    }
+
+    /**
+     * Waits for a queued command, unwrapping the lane's exception. A command that is not answered in
+     * time is cancelled if the lane has not started it yet, so the caller can safely retry; otherwise
+     * the wait goes on until its records are durable.
+     */
+    public BalanceSnapshot await(CompletableFuture<BalanceSnapshot> result) {
+        try {
+            try {
+                return result.get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                if (result.cancel(false)) {
+                    throw new ServerBusyException("Balance engine did not answer in time, please retry");
+                }
+                return result.get();
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (CancellationException ex) {
+            // Another request with the same idempotency key gave up on the command.
+            throw new ServerBusyException("Balance engine did not answer in time, please retry");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new ServerBusyException("Interrupted while waiting for the balance engine");
+        }
+    }
+
+    BalanceLane laneFor(long accountId) {
+        return lanes[Math.floorMod(Long.hashCode(accountId), lanes.length)];
+    }
+
+    /**
+     * Hands a lane an account it sees for the first time, preferably one staged by the caller.
+     *
+     * @return the account, or {@code null} if it does not exist
+     */
+    BalanceSnapshot takeAccount(long accountId) {
+        BalanceSnapshot account = stagedAccounts.remove(accountId);
+        if (account == null) {
+            account = loadAccount(accountId);
+        }
+        if (account != null) {
+            residentAccounts.add(accountId);
+        }
+        return account;
+    }
+
+    /**
+     * Reads an account the engine does not hold yet on the calling thread, so lanes never wait for a
+     * database connection held by a caller that is waiting for the lane.
+     */
+    private void stage(long accountId) {
+        if (residentAccounts.contains(accountId) || stagedAccounts.containsKey(accountId)) {
+            return;
+        }
+        BalanceSnapshot account = loadAccount(accountId);
+        if (account == null) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+        stagedAccounts.putIfAbsent(accountId, account);
+    }
+
+    private BalanceSnapshot loadAccount(long accountId) {
+        List<BalanceSnapshot> accounts = jdbcTemplate.query(
+                "SELECT user_id, balance, created_at FROM accounts WHERE id = ?",
+                (resultSet, rowNum) -> new BalanceSnapshot(
+                        accountId,
+                        resultSet.getLong("user_id"),
+                        Money.fromDecimal(resultSet.getBigDecimal("balance")),
+                        resultSet.getObject("created_at", LocalDateTime.class)
+                ),
+                accountId
+        );
+        return accounts.isEmpty() ? null : accounts.get(0);
+    }
+
+    /**
+     * Registers a cross-lane debit whose credit or refund is not durable yet, so the ledger keeps the
+     * segment holding it. The caller brackets the append and this call with {@link #beginTransfer} and
+     * {@link #endTransfer}.
+     */
+    void openTransfer(long transferId) {
+        openTransfers.add(transferId);
+    }
+
+    /**
+     * Releases a cross-lane debit once its credit or refund is durable.
+     */
+    void closeTransfer(long transferId) {
+        openTransfers.remove(transferId);
+    }
+
+    void beginTransfer() {
+        transfersOpening.incrementAndGet();
+    }
+
+    void endTransfer() {
+        transfersOpening.decrementAndGet();
+    }
+
+    /**
+     * Opens a reader that follows the ledger from record {@code fromId}, for consumers that need every
+     * balance change in order. Segments are kept only until the database has caught up with them, so
+     * a consumer that falls further behind than that has to restart from the database.
+     */
+    public LedgerReader openLedgerReader(long fromId) {
+        if (ledger == null) {
+            throw new IllegalStateException("The in-memory balance engine is not running");
+        }
+        return ledger.reader(fromId);
+    }
+
+    /**
+     * Writes durable ledger records to the database in batches. A failed batch is read again on the
+     * next run, so records reach the database in ledger order. Segments the database has caught up
+     * with are deleted afterwards.
+     *
+     * @return the number of records written
+     */
+    @Scheduled(fixedDelayString = "${app.transfer.in-memory.flush-interval-ms:50}")
+    public int flushToDatabase() {
+        if (ledger == null) {
+            return 0;
+        }
+
+        synchronized (flushLock) {
+            int flushed = 0;
+            while (true) {
+                int written;
+                try {
+                    written = writeBatchToDatabase();
+                } catch (RuntimeException ex) {
+                    logger.error("Failed to write ledger records from {} to the database; will retry", databasePosition, ex);
+                    break;
+                }
+                if (written == 0) {
+                    break;
+                }
+                flushed += written;
+            }
+            releaseSegments();
+            return flushed;
+        }
+    }
+
+    private int writeBatchToDatabase() {
+        List<LedgerRecord> records = ledger.read(databasePosition, flushBatchSize);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        long nextPosition = records.get(records.size() - 1).id() + 1;
+        transactionTemplate.executeWithoutResult(status -> applyToDatabase(records, nextPosition));
+        databasePosition = nextPosition;
+        return records.size();
+    }
+
+    /**
+     * Deletes the segments the database has caught up with, keeping every cross-lane debit that is not
+     * settled yet, since recovery needs it to complete the transfer.
+     */
+    private void releaseSegments() {
+        if (transfersOpening.get() > 0) {
+            // A debit may be in the ledger without being registered yet.
+            return;
+        }
+        Long oldestOpenTransfer = openTransfers.ceiling(Long.MIN_VALUE);
+        long retainFrom = oldestOpenTransfer == null
+                ? databasePosition
+                : Math.min(databasePosition, oldestOpenTransfer);
+        try {
+            ledger.deleteBefore(retainFrom);
+        } catch (IOException ex) {
+            logger.warn("Failed to delete ledger segments before record {}", retainFrom, ex);
+        }
+    }
+
+    /**
+     * Sets each touched account to its latest recorded balance, inserts the transaction rows and
+     * advances the database checkpoint to {@code nextPosition}, all in the caller's transaction.
+     */
+    private void applyToDatabase(List<LedgerRecord> records, long nextPosition) {
+        Map<Long, Long> balances = new LinkedHashMap<>();
+        List<Transaction> transactions = new ArrayList<>();
+
+        for (LedgerRecord record : records) {
+            switch (record.type()) {
+                case DEPOSIT -> {
+                    balances.put(record.toAccountId(), record.toBalance());
+                    transactions.add(toTransaction(record, null, record.toAccountId(), TransactionType.DEPOSIT));
+                }
+                case WITHDRAW -> {
+                    balances.put(record.fromAccountId(), record.fromBalance());
+                    transactions.add(toTransaction(record, record.fromAccountId(), null, TransactionType.WITHDRAW));
+                }
+                case TRANSFER -> {
+                    balances.put(record.fromAccountId(), record.fromBalance());
+                    balances.put(record.toAccountId(), record.toBalance());
+                    transactions.add(toTransaction(record, record.fromAccountId(), record.toAccountId(), TransactionType.TRANSFER));
+                }
+                case TRANSFER_OUT, TRANSFER_REFUND -> balances.put(record.fromAccountId(), record.fromBalance());
+                case TRANSFER_IN -> {
+                    balances.put(record.toAccountId(), record.toBalance());
+                    transactions.add(toTransaction(record, record.fromAccountId(), record.toAccountId(), TransactionType.TRANSFER));
+                }
+            }
+        }
+
+        List<Object[]> balanceUpdates = new ArrayList<>(balances.size());
+        balances.forEach((accountId, balance) -> balanceUpdates.add(new Object[]{Money.toDecimal(balance), accountId}));
+        jdbcTemplate.batchUpdate("UPDATE accounts SET balance = ?, version = version + 1 WHERE id = ?", balanceUpdates);
+        transactionRepository.saveAll(transactions);
+        checkpointRepository.save(LedgerCheckpoint.builder()
+                .consumer(DATABASE_CONSUMER)
+                .position(nextPosition)
+                .build());
+    }
+
+    /**
+     * Opens the ledger left by the previous run, settles the cross-lane transfers it interrupted and
+     * writes the records the database has not seen yet.
+     */
+    private void recover() throws IOException {
+        // A read-write transaction, so the checkpoint comes from the primary even when reads go to a replica.
+        long checkpoint = transactionTemplate.execute(status -> checkpointRepository.findById(DATABASE_CONSUMER)
+                .map(LedgerCheckpoint::getPosition)
+                .orElse(0L));
+        ledger = new LedgerJournal(journalDirectory, segmentBytes, fsync, groupCommitWindowMicros, checkpoint);
+
+        long endId = ledger.nextId();
+        if (checkpoint < ledger.firstId() || checkpoint > endId) {
+            ledger.close();
+            throw new IllegalStateException("The ledger journal in " + journalDirectory + " holds records "
+                    + ledger.firstId() + " to " + endId + " but the database is at record " + checkpoint);
+        }
+
+        Map<Long, Long> latestBalances = new HashMap<>();
+        Map<Long, LedgerRecord> unsettledTransfers = new LinkedHashMap<>();
+        for (long id = ledger.firstId(); id < endId; ) {
+            List<LedgerRecord> records = ledger.read(id, flushBatchSize);
+            for (LedgerRecord record : records) {
+                trackBalance(record, latestBalances);
+                switch (record.type()) {
+                    case TRANSFER_OUT -> unsettledTransfers.put(record.id(), record);
+                    case TRANSFER_IN, TRANSFER_REFUND -> unsettledTransfers.remove(record.transferId());
+                    default -> {
+                    }
+                }
+            }
+            id = records.get(records.size() - 1).id() + 1;
+        }
+
+        for (LedgerRecord transfer : unsettledTransfers.values()) {
+            settle(transfer, latestBalances);
+        }
+        if (!unsettledTransfers.isEmpty()) {
+            ledger.whenDurable(ledger.nextId() - 1).join();
+        }
+
+        synchronized (flushLock) {
+            databasePosition = checkpoint;
+            int replayed = 0;
+            int written;
+            while ((written = writeBatchToDatabase()) > 0) {
+                replayed += written;
+            }
+            ledger.deleteBefore(databasePosition);
+            logger.info("Replayed {} ledger records and settled {} interrupted transfers",
+                    replayed, unsettledTransfers.size());
+        }
+    }
+
+    /**
+     * Completes a cross-lane transfer whose credit never became durable, crediting the destination or
+     * refunding the source. The settlement is appended to the ledger and made durable before it is
+     * applied, so an interrupted recovery does not settle the transfer twice.
+     */
+    private void settle(LedgerRecord transfer, Map<Long, Long> latestBalances) throws IOException {
+        Long destinationBalance = latestBalance(transfer.toAccountId(), latestBalances);
+
+        LedgerRecord settlement;
+        if (destinationBalance != null && destinationBalance <= Money.MAX - transfer.amount()) {
+            settlement = ledger.append(LedgerRecord.Type.TRANSFER_IN, transfer.id(), transfer.fromAccountId(),
+                    transfer.toAccountId(), transfer.amount(), transfer.fromBalance(),
+                    destinationBalance + transfer.amount());
+        } else {
+            long sourceBalance = latestBalance(transfer.fromAccountId(), latestBalances);
+            settlement = ledger.append(LedgerRecord.Type.TRANSFER_REFUND, transfer.id(), transfer.fromAccountId(),
+                    transfer.toAccountId(), transfer.amount(), sourceBalance + transfer.amount(), 0);
+        }
+        trackBalance(settlement, latestBalances);
+    }
+
+    private Long latestBalance(long accountId, Map<Long, Long> latestBalances) {
+        Long balance = latestBalances.get(accountId);
+        if (balance != null) {
+            return balance;
+        }
+        BalanceSnapshot account = loadAccount(accountId);
+        return account == null ? null : account.balance();
+    }
+
+    private static void trackBalance(LedgerRecord record, Map<Long, Long> latestBalances) {
+        switch (record.type()) {
+            case DEPOSIT, TRANSFER_IN -> latestBalances.put(record.toAccountId(), record.toBalance());
+            case WITHDRAW, TRANSFER_OUT, TRANSFER_REFUND -> latestBalances.put(record.fromAccountId(), record.fromBalance());
+            case TRANSFER -> {
+                latestBalances.put(record.fromAccountId(), record.fromBalance());
+                latestBalances.put(record.toAccountId(), record.toBalance());
+            }
+        }
+    }
+
+    /**
+     * Drops fenced commands whose request never completed, once its idempotency key has expired.
+     */
+    @Scheduled(
+            fixedDelayString = "${app.idempotency.purge.interval-ms:60000}",
+            initialDelayString = "${app.idempotency.purge.interval-ms:60000}"
+    )
+    public void purgeFencedCommands() {
+        Instant expiredBefore = Instant.now().minus(fenceExpiration);
+        fencedCommands.values().removeIf(fenced -> fenced.submittedAt().isBefore(expiredBefore));
+    }
+
+    /**
+     * Submits the command once per idempotency key and step. A command that failed or was cancelled is
+     * submitted again; one that is queued or applied is returned as it is. The entry is dropped when the
+     * surrounding transaction, which completes the idempotency record, commits.
+     */
+    private CompletableFuture<BalanceSnapshot> submitOnce(String step, Supplier<LaneCommand> command) {
+        String key = ShardStepFence.currentKey();
+        if (key == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return submit(command.get());
+        }
+
+        String stepKey = key + '#' + step;
+        FencedCommand fenced = fencedCommands.compute(stepKey, (ignored, existing) ->
+                existing != null && !existing.result().isCompletedExceptionally()
+                        ? existing
+                        : new FencedCommand(submit(command.get()), Instant.now()));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    fencedCommands.remove(stepKey, fenced);
+                }
+            }
+        });
+        return fenced.result();
+    }
+
+    private CompletableFuture<BalanceSnapshot> submit(LaneCommand command) {
+        if (lanes == null) {
+            throw new IllegalStateException("The in-memory balance engine is not running");
+        }
+        laneFor(command.accountId()).submit(command);
+        return command.result();
+    }
+
+    private static Transaction toTransaction(LedgerRecord record, Long fromAccountId, Long toAccountId, TransactionType type) {
+        return Transaction.builder()
+                .fromAccountId(fromAccountId)
+                .toAccountId(toAccountId)
+                .amount(record.amount())
+                .type(type)
+                .createdAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.timestamp()), ZoneId.systemDefault()))
+                .build();
+    }
+
+    private record FencedCommand(CompletableFuture<BalanceSnapshot> result, Instant submittedAt) {
+    }
+
+    private static void requireNonNegative(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+    }
+}
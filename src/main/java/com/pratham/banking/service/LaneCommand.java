@@ -0,0 +1,70 @@
+package com.pratham.banking.service;
+
+/**
+ * A request queued on a {@link BalanceLane}. Amounts are in cents.
+ *
+ * @param kind           what the lane should do
+ * @param accountId      the account owned by the receiving lane; for hand-offs, the transfer source
+ * @param counterpartyId the other account of a transfer, otherwise {@code 0}
+ * @param amount         the amount to move
+ * @param transferId     the {@code TRANSFER_OUT} id for hand-offs, otherwise {@code 0}
+ * @param snapshot       the source account after the debit, for hand-offs
+ * @param sourceLane     the lane that debited the source, for hand-offs
+ * @param result         completed with the account the caller asked about; hand-offs share the result
+ *                       of the caller's transfer
+ */
+record LaneCommand(Kind kind,
+                   long accountId,
+                   long counterpartyId,
+                   long amount,
+                   long transferId,
+                   BalanceSnapshot snapshot,
+                   BalanceLane sourceLane,
+                   LaneResult result) {
+
+    enum Kind {
+        BALANCE,
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER,
+
+        /**
+         * Credits the destination of a cross-lane transfer on its own lane.
+         */
+        CREDIT,
+
+        /**
+         * Returns a cross-lane debit to its source after the credit could not be applied.
+         */
+        REFUND
+    }
+
+    /**
+     * @return {@code true} for a command queued by a caller rather than handed off by another lane
+     */
+    boolean fromCaller() {
+        return kind != Kind.CREDIT && kind != Kind.REFUND;
+    }
+
+    static LaneCommand of(Kind kind, long accountId, long counterpartyId, long amount) {
+        return new LaneCommand(kind, accountId, counterpartyId, amount, 0, null, null, new LaneResult());
+    }
+
+    static LaneCommand credit(long transferId,
+                              long fromAccountId,
+                              long toAccountId,
+                              long amount,
+                              BalanceSnapshot snapshot,
+                              BalanceLane sourceLane,
+                              LaneResult result) {
+        return new LaneCommand(Kind.CREDIT, fromAccountId, toAccountId, amount, transferId, snapshot, sourceLane, result);
+    }
+
+    static LaneCommand refund(long transferId,
+                              long fromAccountId,
+                              long toAccountId,
+                              long amount,
+                              LaneResult result) {
+        return new LaneCommand(Kind.REFUND, fromAccountId, toAccountId, amount, transferId, null, null, result);
+    }
+}
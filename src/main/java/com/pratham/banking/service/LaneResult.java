@@ -0,0 +1,31 @@
+package com.pratham.banking.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Result of a {@link LaneCommand} queued by a caller.
+ *
+ * <p>A caller that gives up waiting cancels the result, and the lane skips a command whose result was
+ * cancelled before the lane got to it. Once the lane has started the command, {@link #cancel} returns
+ * {@code false} and the caller has to wait for the answer, which follows as soon as the command's
+ * records are durable.
+ */
+final class LaneResult extends CompletableFuture<BalanceSnapshot> {
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Called by the lane before it applies the command.
+     *
+     * @return {@code false} if the caller cancelled the command first
+     */
+    boolean start() {
+        return started.compareAndSet(false, true);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return started.compareAndSet(false, true) && super.cancel(mayInterruptIfRunning);
+    }
+}
@@ -0,0 +1,508 @@
+package com.pratham.banking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Durable, append-only ledger of balance changes, kept as a series of memory-mapped segment files.
+ *
+ * <p>Writers copy fixed-width {@link LedgerRecord records} into the mapped active segment and then ask
+ * {@link #whenDurable} to be told once their record is on disk. A single sync thread forces everything
+ * appended so far with one msync and completes every waiter it covered, so concurrent writers share
+ * one fsync instead of paying for one each: whoever appends while a force is running is covered by the
+ * next one. A group-commit window makes the thread wait a little longer before each force, which only
+ * pays off on devices where forcing is cheaper than the wait. When the active segment is full a new
+ * one is mapped; segments every consumer has moved past are removed with {@link #deleteBefore}.
+ *
+ * <p>On open the segments are scanned record by record. The log ends at the first record whose id or
+ * CRC does not match, as left by a crash in the middle of a write; the rest of that segment is zeroed
+ * and later segments are deleted. No record past that point was ever reported durable.
+ *
+ * <p>{@link #read} and {@link LedgerReader} only see durable records.
+ */
+public final class LedgerJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerJournal.class);
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("ledger-(\\d{20})\\.segment");
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+    private static final int ZERO_CHUNK = 64 * 1024;
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final boolean fsync;
+    private final long commitWindowNanos;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(LedgerRecord.SIZE);
+    private final Thread syncThread;
+
+    // Guarded by this.
+    private Segment activeSegment;
+    private long nextId;
+    private boolean closed;
+
+    // Every record with a lower id is durable.
+    private volatile long durableId;
+    private volatile Throwable failure;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncRequested = syncLock.newCondition();
+    private final Condition durableAdvanced = syncLock.newCondition();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(Waiter::id));
+    private boolean closing;
+
+    /**
+     * Opens the ledger in {@code directory}, recovering the segments left by the previous run.
+     *
+     * @param segmentBytes       the size of new segment files
+     * @param fsync              whether durability means forced to disk rather than written to the page cache
+     * @param commitWindowMicros how long the sync thread waits for more writers before forcing
+     * @param firstId            the id of the first record when the directory holds no segments
+     */
+    public LedgerJournal(Path directory,
+                         long segmentBytes,
+                         boolean fsync,
+                         long commitWindowMicros,
+                         long firstId) throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = (int) Math.max(1, Math.min(segmentBytes, Integer.MAX_VALUE) / LedgerRecord.SIZE);
+        this.fsync = fsync;
+        this.commitWindowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, commitWindowMicros));
+
+        Files.createDirectories(directory);
+        recover(firstId);
+
+        this.syncThread = new Thread(this::runSync, "ledger-sync");
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+    }
+
+    /**
+     * Appends a record. It is visible to readers only once durable.
+     *
+     * @return the record, with its id and timestamp assigned
+     */
+    public synchronized LedgerRecord append(LedgerRecord.Type type,
+                                            long transferId,
+                                            long fromAccountId,
+                                            long toAccountId,
+                                            long amount,
+                                            long fromBalance,
+                                            long toBalance) throws IOException {
+        if (closed || failure != null) {
+            throw new IllegalStateException("The ledger journal is not accepting records", failure);
+        }
+        if (nextId == activeSegment.endId()) {
+            roll();
+        }
+
+        LedgerRecord record = new LedgerRecord(
+                nextId,
+                System.currentTimeMillis(),
+                type,
+                transferId,
+                fromAccountId,
+                toAccountId,
+                amount,
+                fromBalance,
+                toBalance
+        );
+        record.writeTo(writeBuffer);
+        activeSegment.buffer().put(activeSegment.offsetOf(nextId), writeBuffer.array());
+        nextId++;
+        return record;
+    }
+
+    /**
+     * Returns a future completed once the record {@code id} and every record before it are durable, or
+     * completed exceptionally if forcing the ledger failed.
+     */
+    public CompletableFuture<Void> whenDurable(long id) {
+        if (id < durableId) {
+            return DURABLE;
+        }
+        syncLock.lock();
+        try {
+            if (failure != null) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Ledger sync failed", failure));
+            }
+            if (id < durableId) {
+                return DURABLE;
+            }
+            CompletableFuture<Void> durable = new CompletableFuture<>();
+            waiters.add(new Waiter(id, durable));
+            syncRequested.signal();
+            return durable;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to {@code maxRecords} durable records starting at {@code fromId}.
+     *
+     * @return the records in id order, empty if none past {@code fromId} is durable yet
+     * @throws IllegalStateException if {@code fromId} lies in a deleted segment
+     */
+    public List<LedgerRecord> read(long fromId, int maxRecords) {
+        long endId = Math.min(durableId, fromId + maxRecords);
+        if (fromId >= endId) {
+            return List.of();
+        }
+
+        Map.Entry<Long, Segment> first = segments.floorEntry(fromId);
+        if (first == null) {
+            throw new IllegalStateException("Ledger records before " + firstId() + " have been deleted");
+        }
+
+        ByteBuffer readBuffer = ByteBuffer.allocate(LedgerRecord.SIZE);
+        List<LedgerRecord> records = new ArrayList<>((int) (endId - fromId));
+        Segment segment = first.getValue();
+        for (long id = fromId; id < endId; id++) {
+            if (id == segment.endId()) {
+                segment = segments.get(id);
+                if (segment == null) {
+                    throw new IllegalStateException("Ledger segment starting at " + id + " has been deleted");
+                }
+            }
+            LedgerRecord record = readRecord(segment, id, readBuffer);
+            if (record == null) {
+                throw new IllegalStateException("Ledger record " + id + " is corrupt");
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Opens a reader that follows the ledger from {@code fromId}.
+     */
+    public LedgerReader reader(long fromId) {
+        return new LedgerReader(this, fromId);
+    }
+
+    /**
+     * Waits until the record {@code id} is durable.
+     *
+     * @return whether it became durable within the timeout
+     */
+    boolean awaitDurable(long id, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        syncLock.lock();
+        try {
+            while (id >= durableId) {
+                if (remaining <= 0 || failure != null) {
+                    return false;
+                }
+                remaining = durableAdvanced.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments holding only records below {@code id}. The active segment is never deleted.
+     */
+    public void deleteBefore(long id) throws IOException {
+        while (true) {
+            Map.Entry<Long, Segment> first = segments.firstEntry();
+            Long nextFirstId = segments.higherKey(first.getKey());
+            if (nextFirstId == null || nextFirstId > id) {
+                return;
+            }
+            segments.remove(first.getKey());
+            Files.deleteIfExists(segmentPath(first.getKey()));
+        }
+    }
+
+    /**
+     * Returns the id of the oldest record still kept.
+     */
+    public long firstId() {
+        return segments.firstKey();
+    }
+
+    /**
+     * Returns the id the next appended record will get.
+     */
+    public synchronized long nextId() {
+        return nextId;
+    }
+
+    /**
+     * Stops accepting records and makes every appended record durable.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        syncLock.lock();
+        try {
+            closing = true;
+            syncRequested.signal();
+        } finally {
+            syncLock.unlock();
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                syncThread.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        sync();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSync() {
+        while (true) {
+            syncLock.lock();
+            try {
+                while (waiters.isEmpty() && !closing) {
+                    syncRequested.awaitUninterruptibly();
+                }
+                if (waiters.isEmpty()) {
+                    return;
+                }
+            } finally {
+                syncLock.unlock();
+            }
+
+            if (commitWindowNanos > 0) {
+                LockSupport.parkNanos(commitWindowNanos);
+            }
+            if (!sync()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forces every record appended so far and completes the waiters it covers.
+     *
+     * @return whether the ledger is still usable
+     */
+    private boolean sync() {
+        long targetId;
+        synchronized (this) {
+            targetId = nextId;
+        }
+
+        Throwable error = null;
+        try {
+            force(durableId, targetId);
+        } catch (RuntimeException | Error ex) {
+            error = ex;
+        }
+
+        List<Waiter> covered = new ArrayList<>();
+        syncLock.lock();
+        try {
+            if (error == null) {
+                durableId = targetId;
+                while (!waiters.isEmpty() && waiters.peek().id() < targetId) {
+                    covered.add(waiters.poll());
+                }
+                durableAdvanced.signalAll();
+            } else {
+                failure = error;
+                covered.addAll(waiters);
+                waiters.clear();
+                durableAdvanced.signalAll();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+
+        if (error != null) {
+            logger.error("Failed to force the ledger journal; no further records are accepted", error);
+            IllegalStateException syncFailure = new IllegalStateException("Ledger sync failed", error);
+            covered.forEach(waiter -> waiter.durable().completeExceptionally(syncFailure));
+            return false;
+        }
+        covered.forEach(waiter -> waiter.durable().complete(null));
+        return true;
+    }
+
+    private void force(long fromId, long toId) {
+        if (!fsync || fromId >= toId) {
+            return;
+        }
+        Long firstSegmentId = segments.floorKey(fromId);
+        for (Segment segment : segments.subMap(firstSegmentId == null ? fromId : firstSegmentId, toId).values()) {
+            long startId = Math.max(fromId, segment.firstId());
+            long endId = Math.min(toId, segment.endId());
+            if (startId < endId) {
+                segment.buffer().force(segment.offsetOf(startId), (int) (endId - startId) * LedgerRecord.SIZE);
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        Segment segment = mapSegment(nextId, recordsPerSegment);
+        segments.put(segment.firstId(), segment);
+        activeSegment = segment;
+        if (fsync) {
+            syncDirectory();
+        }
+    }
+
+    private void recover(long firstId) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "ledger-*.segment")) {
+            for (Path path : paths) {
+                Matcher matcher = SEGMENT_FILE.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), path);
+                }
+            }
+        }
+
+        if (files.isEmpty()) {
+            nextId = firstId;
+            roll();
+            durableId = nextId;
+            return;
+        }
+
+        long expectedId = files.firstKey();
+        boolean ended = false;
+        ByteBuffer readBuffer = ByteBuffer.allocate(LedgerRecord.SIZE);
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            if (ended) {
+                Files.delete(file.getValue());
+                logger.warn("Deleted ledger segment {} written after the end of the log", file.getValue());
+                continue;
+            }
+            if (file.getKey() != expectedId) {
+                throw new IllegalStateException("Ledger segment " + file.getValue()
+                        + " does not continue the log at record " + expectedId);
+            }
+
+            Segment segment = mapSegment(file.getKey(), 0);
+            segments.put(segment.firstId(), segment);
+            activeSegment = segment;
+
+            long id = segment.firstId();
+            while (id < segment.endId() && readRecord(segment, id, readBuffer) != null) {
+                id++;
+            }
+            if (id < segment.endId()) {
+                ended = true;
+                zeroFrom(segment, id);
+            }
+            expectedId = id;
+        }
+
+        nextId = expectedId;
+        if (fsync) {
+            segments.values().forEach(segment -> segment.buffer().force());
+        }
+        durableId = nextId;
+        logger.info("Opened ledger journal in {} with records {} to {}", directory, firstId(), nextId);
+    }
+
+    /**
+     * Maps a segment file, creating it with room for {@code capacity} records, or with its current size
+     * when {@code capacity} is {@code 0}.
+     */
+    private Segment mapSegment(long firstId, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(firstId),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int records = capacity > 0
+                    ? capacity
+                    : (int) Math.min(channel.size() / LedgerRecord.SIZE, Integer.MAX_VALUE / LedgerRecord.SIZE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) records * LedgerRecord.SIZE);
+            return new Segment(firstId, records, buffer);
+        }
+    }
+
+    /**
+     * Clears the segment from record {@code id} on, so bytes of a torn write can never be read back as
+     * a record once that position is written again.
+     */
+    private void zeroFrom(Segment segment, long id) {
+        byte[] chunk = new byte[ZERO_CHUNK];
+        byte[] zeros = new byte[ZERO_CHUNK];
+        boolean torn = false;
+        int end = segment.capacity() * LedgerRecord.SIZE;
+        for (int offset = segment.offsetOf(id); offset < end; offset += ZERO_CHUNK) {
+            int length = Math.min(ZERO_CHUNK, end - offset);
+            segment.buffer().get(offset, chunk, 0, length);
+            if (Arrays.mismatch(chunk, 0, length, zeros, 0, length) >= 0) {
+                segment.buffer().put(offset, zeros, 0, length);
+                torn = true;
+            }
+        }
+        if (torn) {
+            logger.warn("Ledger journal ends at record {}; cut off an incomplete write", id);
+        }
+    }
+
+    private static LedgerRecord readRecord(Segment segment, long id, ByteBuffer readBuffer) {
+        segment.buffer().get(segment.offsetOf(id), readBuffer.array(), 0, LedgerRecord.SIZE);
+        return LedgerRecord.readFrom(readBuffer, id);
+    }
+
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private Path segmentPath(long firstId) {
+        return directory.resolve(String.format("ledger-%020d.segment", firstId));
+    }
+
+    private record Segment(long firstId, int capacity, MappedByteBuffer buffer) {
+
+        long endId() {
+            return firstId + capacity;
+        }
+
+        int offsetOf(long id) {
+            return (int) (id - firstId) * LedgerRecord.SIZE;
+        }
+    }
+
+    private record Waiter(long id, CompletableFuture<Void> durable) {
+    }
+}
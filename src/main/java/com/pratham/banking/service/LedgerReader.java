@@ -0,0 +1,55 @@
+package com.pratham.banking.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the {@link LedgerJournal} from a position, so a consumer sees every balance change in order
+ * without querying the {@code transactions} table.
+ *
+ * <p>A reader only returns durable records and is not thread-safe; each consumer keeps its own and
+ * stores {@link #position()} wherever it tracks its progress. Reading from a position whose segment has
+ * been deleted fails with an {@link IllegalStateException}.
+ */
+public final class LedgerReader {
+
+    private final LedgerJournal journal;
+    private long position;
+
+    LedgerReader(LedgerJournal journal, long position) {
+        this.journal = journal;
+        this.position = position;
+    }
+
+    /**
+     * Returns the id of the next record this reader will return.
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Returns up to {@code maxRecords} records past the current position without waiting.
+     */
+    public List<LedgerRecord> poll(int maxRecords) {
+        List<LedgerRecord> records = journal.read(position, maxRecords);
+        if (!records.isEmpty()) {
+            position = records.get(records.size() - 1).id() + 1;
+        }
+        return records;
+    }
+
+    /**
+     * Returns up to {@code maxRecords} records past the current position, waiting up to {@code timeout}
+     * for the next one when the reader has caught up.
+     *
+     * @return the records, empty if none became durable within the timeout
+     */
+    public List<LedgerRecord> poll(int maxRecords, long timeout, TimeUnit unit) throws InterruptedException {
+        List<LedgerRecord> records = poll(maxRecords);
+        if (records.isEmpty() && journal.awaitDurable(position, timeout, unit)) {
+            return poll(maxRecords);
+        }
+        return records;
+    }
+}
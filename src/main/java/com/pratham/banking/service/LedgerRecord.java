@@ -0,0 +1,118 @@
+package com.pratham.banking.service;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * One balance change in the {@link LedgerJournal}.
+ *
+ * <p>Amounts and balances are in minor units (cents). Balances are the absolute values after the
+ * change, so applying a record twice leaves the account balance unchanged. Account ids that do not
+ * apply to the record type are {@code 0}.
+ *
+ * <p>On disk a record is {@value #SIZE} bytes, big-endian: the fields in declaration order with the
+ * type as one byte, padded to a multiple of eight and closed by a CRC32C of everything before it.
+ *
+ * @param id            the position of the record in the ledger, starting at {@code 0}
+ * @param timestamp     the time of the change in epoch milliseconds
+ * @param type          the kind of change
+ * @param transferId    for {@link Type#TRANSFER_IN} and {@link Type#TRANSFER_REFUND}, the id of the
+ *                      matching {@link Type#TRANSFER_OUT}; otherwise {@code 0}
+ * @param fromAccountId the debited account
+ * @param toAccountId   the credited account
+ * @param amount        the amount moved
+ * @param fromBalance   the debited account's balance after the change
+ * @param toBalance     the credited account's balance after the change
+ */
+public record LedgerRecord(long id,
+                           long timestamp,
+                           Type type,
+                           long transferId,
+                           long fromAccountId,
+                           long toAccountId,
+                           long amount,
+                           long fromBalance,
+                           long toBalance) {
+
+    static final int SIZE = 72;
+
+    private static final int TYPE_OFFSET = Long.BYTES * 8;
+    private static final int CRC_OFFSET = SIZE - Integer.BYTES;
+    private static final Type[] TYPES = Type.values();
+
+    public enum Type {
+        DEPOSIT,
+        WITHDRAW,
+
+        /**
+         * A transfer between two accounts of the same lane.
+         */
+        TRANSFER,
+
+        /**
+         * The debit half of a transfer whose destination lives on another lane.
+         */
+        TRANSFER_OUT,
+
+        /**
+         * The credit half of a cross-lane transfer, written by the destination lane.
+         */
+        TRANSFER_IN,
+
+        /**
+         * Returns the debit of a cross-lane transfer whose destination account does not exist.
+         */
+        TRANSFER_REFUND
+    }
+
+    /**
+     * Writes the record and its checksum into {@code buffer}, a heap buffer of exactly {@link #SIZE} bytes.
+     */
+    void writeTo(ByteBuffer buffer) {
+        buffer.clear();
+        buffer.putLong(id)
+                .putLong(timestamp)
+                .putLong(transferId)
+                .putLong(fromAccountId)
+                .putLong(toAccountId)
+                .putLong(amount)
+                .putLong(fromBalance)
+                .putLong(toBalance)
+                .put((byte) type.ordinal());
+        // The padding bytes are never written and stay zero.
+        buffer.putInt(CRC_OFFSET, checksum(buffer.array()));
+    }
+
+    /**
+     * Reads a record from a heap buffer of {@link #SIZE} bytes.
+     *
+     * @return the record, or {@code null} if the bytes are not the record {@code expectedId} with a
+     *         matching checksum, as for a torn write or the unwritten tail of a segment
+     */
+    static LedgerRecord readFrom(ByteBuffer buffer, long expectedId) {
+        byte[] bytes = buffer.array();
+        int type = bytes[TYPE_OFFSET];
+        if (buffer.getLong(0) != expectedId
+                || type < 0 || type >= TYPES.length
+                || buffer.getInt(CRC_OFFSET) != checksum(bytes)) {
+            return null;
+        }
+        return new LedgerRecord(
+                expectedId,
+                buffer.getLong(8),
+                TYPES[type],
+                buffer.getLong(16),
+                buffer.getLong(24),
+                buffer.getLong(32),
+                buffer.getLong(40),
+                buffer.getLong(48),
+                buffer.getLong(56)
+        );
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, CRC_OFFSET);
+        return (int) crc.getValue();
+    }
+}
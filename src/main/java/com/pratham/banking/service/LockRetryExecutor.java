@@ -0,0 +1,198 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.exception.LockContentionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Runs money-path work in a transaction with a bounded lock wait, retrying lock conflicts.
+ *
+ * <p>Every transaction gets {@code app.transfer.lock-timeout-ms} as its PostgreSQL {@code lock_timeout},
+ * so a stalled transaction on a hot account cannot hold waiting requests indefinitely. Lock timeouts,
+ * deadlocks and serialization failures roll the transaction back and run it again after a jittered
+ * exponential backoff, as do version conflicts of optimistically locked accounts. When the attempts
+ * run out the caller gets a {@link LockContentionException}.
+ *
+ * <p>Retrying needs to own the transaction. When called inside an existing transaction the work runs
+ * once and failures propagate, so the owner of the outer transaction can retry it as a whole.
+ * {@link #executeOnShard} is the exception when database shards are enabled: the work always gets its
+ * own transaction on the account's shard.
+ */
+@Component
+public class LockRetryExecutor {
+
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate shardTransactionTemplate;
+    private final DatabaseShardRouter databaseShardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final BankingMetrics bankingMetrics;
+    private final long lockTimeoutMs;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private volatile Boolean postgreSql;
+
+    public LockRetryExecutor(PlatformTransactionManager transactionManager,
+                             JdbcTemplate jdbcTemplate,
+                             BankingMetrics bankingMetrics,
+                             DatabaseShardRouter databaseShardRouter,
+                             @Value("${app.transfer.lock-timeout-ms:2000}") long lockTimeoutMs,
+                             @Value("${app.transfer.retry.max-attempts:3}") int maxAttempts,
+                             @Value("${app.transfer.retry.initial-backoff-ms:20}") long initialBackoffMs,
+                             @Value("${app.transfer.retry.max-backoff-ms:500}") long maxBackoffMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.databaseShardRouter = databaseShardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bankingMetrics = bankingMetrics;
+        this.lockTimeoutMs = lockTimeoutMs;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Runs {@code action} in a transaction, retrying it on lock conflicts.
+     *
+     * @param action the transactional work; it may run more than once
+     * @return the action's result
+     * @throws LockContentionException if every attempt failed on a lock conflict
+     */
+    public <T> T execute(Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            applyLockTimeout();
+            return action.get();
+        }
+        return executeWithRetries(transactionTemplate, action);
+    }
+
+    /**
+     * Runs {@code action} like {@link #execute} against the given database shard. With shards enabled
+     * the action runs in a new transaction even inside an existing one, since a transaction cannot
+     * span shards; it commits before the caller's transaction does.
+     *
+     * @param shard  the shard owning the accounts the action touches, see {@link DatabaseShardRouter}
+     * @param action the transactional work; it may run more than once
+     * @return the action's result
+     * @throws LockContentionException if every attempt failed on a lock conflict
+     */
+    public <T> T executeOnShard(int shard, Supplier<T> action) {
+        if (!databaseShardRouter.isEnabled()) {
+            return execute(action);
+        }
+        return databaseShardRouter.onShard(shard, () -> executeWithRetries(shardTransactionTemplate, action));
+    }
+
+    private <T> T executeWithRetries(TransactionTemplate template, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            AtomicReference<ConcurrencyFailureException> failureInAction = new AtomicReference<>();
+            try {
+                return template.execute(status -> {
+                    applyLockTimeout();
+                    try {
+                        return action.get();
+                    } catch (ConcurrencyFailureException ex) {
+                        failureInAction.set(ex);
+                        throw ex;
+                    }
+                });
+            } catch (RuntimeException ex) {
+                // The rollback after a lock error can itself fail when the pool drops the connection,
+                // hiding the lock error behind the rollback exception.
+                ConcurrencyFailureException lockFailure = ex instanceof ConcurrencyFailureException commitFailure
+                        ? commitFailure
+                        : failureInAction.get();
+                if (lockFailure == null) {
+                    throw ex;
+                }
+
+                String cause = classify(lockFailure);
+                if (attempt >= maxAttempts) {
+                    bankingMetrics.recordLockFailure(cause, false);
+                    throw new LockContentionException("Account is busy, please retry", lockFailure);
+                }
+
+                bankingMetrics.recordLockFailure(cause, true);
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Classifies a lock conflict by the SQL state of its root JDBC exception.
+     *
+     * @return {@code optimistic}, {@code deadlock}, {@code lock_timeout}, {@code serialization} or {@code conflict}
+     */
+    public static String classify(Throwable failure) {
+        if (failure instanceof OptimisticLockingFailureException) {
+            return "optimistic";
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                switch (sqlException.getSQLState()) {
+                    case "40P01":
+                        return "deadlock";
+                    case "55P03":
+                    case "HYT00":
+                        return "lock_timeout";
+                    case "40001":
+                        // H2 reports deadlocks with the generic serialization failure state.
+                        return sqlException.getErrorCode() == 40001 ? "deadlock" : "serialization";
+                    default:
+                        break;
+                }
+            }
+        }
+        return "conflict";
+    }
+
+    private void applyLockTimeout() {
+        if (lockTimeoutMs <= 0 || !isPostgreSql()) {
+            return;
+        }
+        jdbcTemplate.queryForObject(
+                "SELECT set_config('lock_timeout', ?, true)",
+                String.class,
+                lockTimeoutMs + "ms"
+        );
+    }
+
+    private boolean isPostgreSql() {
+        Boolean current = postgreSql;
+        if (current == null) {
+            String productName = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()
+            );
+            current = POSTGRESQL.equalsIgnoreCase(productName);
+            postgreSql = current;
+        }
+        return current;
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LockContentionException("Interrupted while waiting to retry", ex);
+        }
+    }
+}
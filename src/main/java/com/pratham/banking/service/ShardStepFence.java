@@ -0,0 +1,168 @@
+package com.pratham.banking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratham.banking.entity.ShardStepMarker;
+import com.pratham.banking.repository.ShardStepMarkerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.function.Supplier;
+
+/**
+ * Makes the shard steps of an idempotent request run at most once per idempotency key.
+ *
+ * <p>With database shards the money moves in a transaction on the account's shard, which commits
+ * before {@link IdempotencyService} completes the key's record on the home shard. If that completion
+ * fails, the claim is released and the client's retry runs the request again. {@link #executeOnce}
+ * therefore writes a {@link ShardStepMarker} holding the step's result in the step's own transaction
+ * and, when the marker is already there, returns the stored result without running the step.
+ *
+ * <p>The key is bound to the thread by {@link IdempotencyService} while it runs a claimed request.
+ * Without shards, or outside an idempotent request, steps simply run on their shard; the idempotency
+ * record then commits in the same transaction as the step. Markers expire with the idempotency
+ * records, after which a key may be reused. {@link InMemoryBalanceEngine} fences its commands by the
+ * same key.
+ */
+@Component
+public class ShardStepFence {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardStepFence.class);
+
+    private static final ThreadLocal<String> CURRENT_KEY = new ThreadLocal<>();
+    private static final char STEP_SEPARATOR = '#';
+
+    private final ShardStepMarkerRepository shardStepMarkerRepository;
+    private final LockRetryExecutor lockRetryExecutor;
+    private final DatabaseShardRouter databaseShardRouter;
+    private final ObjectMapper objectMapper;
+    private final Duration expiration;
+    private final int purgeBatchSize;
+
+    public ShardStepFence(ShardStepMarkerRepository shardStepMarkerRepository,
+                          LockRetryExecutor lockRetryExecutor,
+                          DatabaseShardRouter databaseShardRouter,
+                          ObjectMapper objectMapper,
+                          @Value("${app.idempotency.expiration-hours:24}") long expirationHours,
+                          @Value("${app.idempotency.purge.batch-size:1000}") int purgeBatchSize) {
+        this.shardStepMarkerRepository = shardStepMarkerRepository;
+        this.lockRetryExecutor = lockRetryExecutor;
+        this.databaseShardRouter = databaseShardRouter;
+        this.objectMapper = objectMapper;
+        this.expiration = Duration.ofHours(expirationHours);
+        this.purgeBatchSize = purgeBatchSize;
+    }
+
+    /**
+     * Runs {@code action} with the idempotency key bound to the current thread.
+     */
+    public <T> T withKey(String key, Supplier<T> action) {
+        String previous = CURRENT_KEY.get();
+        CURRENT_KEY.set(key);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_KEY.remove();
+            } else {
+                CURRENT_KEY.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Returns the idempotency key bound to the current thread, or {@code null} outside an idempotent
+     * request.
+     */
+    static String currentKey() {
+        return CURRENT_KEY.get();
+    }
+
+    /**
+     * Runs {@code action} on the shard like {@link LockRetryExecutor#executeOnShard}, at most once per
+     * bound idempotency key and step.
+     *
+     * @param step       names the step within the request; a request running several steps must give
+     *                   each a different name that does not depend on earlier outcomes
+     * @param resultType the action's result type, used to read a stored result back
+     * @return the action's result, or the stored result of the same step of an earlier attempt
+     */
+    public <T> T executeOnce(int shard, String step, Class<T> resultType, Supplier<T> action) {
+        String key = CURRENT_KEY.get();
+        if (!databaseShardRouter.isEnabled() || key == null) {
+            return lockRetryExecutor.executeOnShard(shard, action);
+        }
+
+        String stepKey = key + STEP_SEPARATOR + step;
+        return lockRetryExecutor.executeOnShard(shard, () -> {
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            ShardStepMarker marker = shardStepMarkerRepository.findById(stepKey).orElse(null);
+            if (marker != null) {
+                if (marker.getCreatedAt().isAfter(now.minus(expiration))) {
+                    return readResult(marker.getResultBody(), resultType);
+                }
+                shardStepMarkerRepository.delete(marker);
+                shardStepMarkerRepository.flush();
+            }
+
+            T result = action.get();
+            shardStepMarkerRepository.save(ShardStepMarker.builder()
+                    .stepKey(stepKey)
+                    .resultBody(writeResult(result))
+                    .createdAt(now)
+                    .build());
+            return result;
+        });
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.idempotency.purge.interval-ms:60000}",
+            initialDelayString = "${app.idempotency.purge.interval-ms:60000}"
+    )
+    public void purgeExpiredMarkers() {
+        if (!databaseShardRouter.isEnabled()) {
+            return;
+        }
+
+        LocalDateTime expirationThreshold = LocalDateTime.now().minus(expiration);
+        for (int shard = 0; shard < databaseShardRouter.shardCount(); shard++) {
+            try {
+                long purged = 0;
+                int deleted;
+                do {
+                    deleted = databaseShardRouter.write(shard, () ->
+                            shardStepMarkerRepository.deleteExpiredBatch(expirationThreshold, purgeBatchSize));
+                    purged += deleted;
+                } while (deleted == purgeBatchSize);
+
+                if (purged > 0) {
+                    logger.info("Purged {} expired shard step markers on shard {}", purged, shard);
+                }
+            } catch (RuntimeException ex) {
+                logger.warn("Could not purge shard step markers of shard {}", shard, ex);
+            }
+        }
+    }
+
+    private String writeResult(Object result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to serialize shard step result", ex);
+        }
+    }
+
+    private <T> T readResult(String resultBody, Class<T> resultType) {
+        try {
+            return objectMapper.readValue(resultBody, resultType);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to deserialize shard step result", ex);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.pratham.banking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratham.banking.dto.TransactionPageResponse;
+import com.pratham.banking.dto.TransactionResponse;
+import com.pratham.banking.entity.Transaction;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Service for reading large transaction histories without materializing them in memory.
+ */
+@Service
+public class TransactionHistoryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final int EXPORT_FLUSH_INTERVAL = 500;
+    private static final String CURSOR_SEPARATOR = "|";
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final DatabaseShardRouter databaseShardRouter;
+
+    public TransactionHistoryService(AccountRepository accountRepository,
+                                     TransactionRepository transactionRepository,
+                                     EntityManager entityManager,
+                                     ObjectMapper objectMapper,
+                                     DatabaseShardRouter databaseShardRouter) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.databaseShardRouter = databaseShardRouter;
+    }
+
+    /**
+     * Returns one page of history, newest first, positioned after the given {@code (createdAt, id)} cursor.
+     *
+     * @param accountId the account id
+     * @param cursor    the {@code nextCursor} of the previous page, or {@code null} for the first page
+     * @param limit     the page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return the page and the cursor for the next one
+     */
+    public TransactionPageResponse getTransactionPage(Long accountId, String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return databaseShardRouter.read(
+                databaseShardRouter.shardOf(accountId),
+                () -> readTransactionPage(accountId, cursor, limit)
+        );
+    }
+
+    private TransactionPageResponse readTransactionPage(Long accountId, String cursor, int limit) {
+        requireAccount(accountId);
+
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        int fetchSize = pageSize + 1;
+
+        List<Transaction> transactions;
+        if (cursor == null || cursor.isBlank()) {
+            transactions = transactionRepository.findFirstPageByAccountId(accountId, fetchSize);
+        } else {
+            Cursor position = decodeCursor(cursor);
+            transactions = transactionRepository.findPageByAccountIdBefore(
+                    accountId,
+                    position.createdAt(),
+                    position.id(),
+                    fetchSize
+            );
+        }
+
+        boolean hasMore = transactions.size() > pageSize;
+        List<Transaction> page = hasMore ? transactions.subList(0, pageSize) : transactions;
+
+        return TransactionPageResponse.builder()
+                .items(page.stream().map(this::mapToTransactionResponse).toList())
+                .nextCursor(hasMore ? encodeCursor(page.get(page.size() - 1)) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    public void requireAccount(Long accountId) {
+        boolean exists = databaseShardRouter.read(
+                databaseShardRouter.shardOf(accountId),
+                () -> accountRepository.existsById(accountId)
+        );
+        if (!exists) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+    }
+
+    /**
+     * Writes the full history as newline-delimited JSON, newest first. Rows are read through a
+     * database cursor and detached once written, so memory use does not grow with history size.
+     *
+     * @param accountId    the account id
+     * @param outputStream the response body stream
+     */
+    public void exportTransactions(Long accountId, OutputStream outputStream) {
+        databaseShardRouter.read(databaseShardRouter.shardOf(accountId), () -> {
+            writeTransactions(accountId, outputStream);
+            return null;
+        });
+    }
+
+    private void writeTransactions(Long accountId, OutputStream outputStream) {
+        BufferedOutputStream bufferedOutput = new BufferedOutputStream(outputStream);
+        try (Stream<Transaction> transactions = transactionRepository.streamByAccountId(accountId)) {
+            Iterator<Transaction> iterator = transactions.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                bufferedOutput.write(objectMapper.writeValueAsBytes(mapToTransactionResponse(transaction)));
+                bufferedOutput.write('\n');
+                entityManager.detach(transaction);
+
+                if (++written % EXPORT_FLUSH_INTERVAL == 0) {
+                    bufferedOutput.flush();
+                }
+            }
+            bufferedOutput.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write transaction export", ex);
+        }
+    }
+
+    private String encodeCursor(Transaction transaction) {
+        String position = transaction.getCreatedAt() + CURSOR_SEPARATOR + transaction.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Cursor decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separatorIndex = position.lastIndexOf(CURSOR_SEPARATOR);
+            return new Cursor(
+                    LocalDateTime.parse(position.substring(0, separatorIndex)),
+                    Long.parseLong(position.substring(separatorIndex + 1))
+            );
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private TransactionResponse mapToTransactionResponse(Transaction transaction) {
+        return TransactionResponse.builder()
+                .id(transaction.getId())
+                .fromAccountId(transaction.getFromAccountId())
+                .toAccountId(transaction.getToAccountId())
+                .amount(transaction.getAmount())
+                .type(transaction.getType())
+                .createdAt(transaction.getCreatedAt())
+                .build();
+    }
+
+    private record Cursor(LocalDateTime createdAt, Long id) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.pratham.banking.service;
+
+/**
+ * Strategies for applying the balance changes of a transfer, selected with {@code app.transfer.engine}.
+ */
+public enum TransferEngine {
+
+    /**
+     * Locks both accounts with {@code SELECT ... FOR UPDATE} in id order and updates the loaded entities.
+     */
+    LOCKING,
+
+    /**
+     * Applies a guarded {@code UPDATE ... WHERE balance >= :amount} debit and a single-statement credit,
+     * in id order, using the affected-row count to detect insufficient funds.
+     */
+    CONDITIONAL_UPDATE,
+
+    /**
+     * Applies deposits, withdrawals and transfers on single-threaded in-memory lanes, recording each
+     * change in a memory-mapped ledger journal and writing balances and transaction rows to the
+     * database in the background.
+     */
+    IN_MEMORY
+}
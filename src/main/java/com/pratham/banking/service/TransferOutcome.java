@@ -0,0 +1,22 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.AccountResponse;
+
+/**
+ * Result of one transfer of a group: the source account after the transfer, or the exception that
+ * rejected it.
+ */
+public record TransferOutcome(AccountResponse account, RuntimeException failure) {
+
+    static TransferOutcome applied(AccountResponse account) {
+        return new TransferOutcome(account, null);
+    }
+
+    static TransferOutcome rejected(RuntimeException failure) {
+        return new TransferOutcome(null, failure);
+    }
+
+    public boolean isApplied() {
+        return failure == null;
+    }
+}
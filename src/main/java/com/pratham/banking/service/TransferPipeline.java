@@ -0,0 +1,252 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.dto.TransferRequest;
+import com.pratham.banking.exception.ServerBusyException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Group commit for single transfers, enabled with {@code app.transfer.group-commit.enabled=true}.
+ *
+ * <p>Transfers are queued by the request threads and applied by {@code app.transfer.group-commit.workers}
+ * worker threads. A worker takes the first queued transfer, keeps collecting for up to
+ * {@code window-us} microseconds or until it holds {@code max-batch-size} transfers, and applies them
+ * with {@link AccountService#transferGroup} in one transaction, so the transfers share one commit. Each
+ * caller gets the outcome of its own transfer: a rejected transfer fails only its caller, and the
+ * idempotency record of every applied transfer is completed in the same transaction. If the group as a
+ * whole fails, its transfers are applied again one by one, so one caller's failure is not reported to
+ * the others.
+ *
+ * <p>The request thread holds no database connection while it waits. Not available with the
+ * {@code IN_MEMORY} engine, which already commits in groups, or with database shards.
+ */
+@Service
+public class TransferPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferPipeline.class);
+
+    private final AccountService accountService;
+    private final IdempotencyService idempotencyService;
+    private final BankingMetrics bankingMetrics;
+    private final boolean enabled;
+    private final TransferEngine transferEngine;
+    private final boolean databaseShardsEnabled;
+    private final int workerCount;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final long requestTimeoutMs;
+    private final BlockingQueue<PendingTransfer> queue;
+
+    private volatile boolean running;
+    private Thread[] workers;
+
+    public TransferPipeline(AccountService accountService,
+                            IdempotencyService idempotencyService,
+                            BankingMetrics bankingMetrics,
+                            @Value("${app.transfer.group-commit.enabled:false}") boolean enabled,
+                            @Value("${app.transfer.engine:LOCKING}") TransferEngine transferEngine,
+                            @Value("${app.datasource.shards.enabled:false}") boolean databaseShardsEnabled,
+                            @Value("${app.transfer.group-commit.workers:2}") int workerCount,
+                            @Value("${app.transfer.group-commit.max-batch-size:64}") int maxBatchSize,
+                            @Value("${app.transfer.group-commit.window-us:500}") long windowMicros,
+                            @Value("${app.transfer.group-commit.queue-capacity:10000}") int queueCapacity,
+                            @Value("${app.transfer.group-commit.request-timeout-ms:10000}") long requestTimeoutMs) {
+        this.accountService = accountService;
+        this.idempotencyService = idempotencyService;
+        this.bankingMetrics = bankingMetrics;
+        this.enabled = enabled;
+        this.transferEngine = transferEngine;
+        this.databaseShardsEnabled = databaseShardsEnabled;
+        this.workerCount = Math.max(1, workerCount);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, windowMicros));
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (transferEngine == TransferEngine.IN_MEMORY) {
+            throw new IllegalStateException("Transfer group commit does not support the IN_MEMORY transfer engine");
+        }
+        if (databaseShardsEnabled) {
+            throw new IllegalStateException("Transfer group commit does not support database shards");
+        }
+
+        running = true;
+        workers = new Thread[workerCount];
+        for (int index = 0; index < workerCount; index++) {
+            workers[index] = new Thread(this::drain, "transfer-group-commit-" + index);
+            workers[index].setDaemon(true);
+            workers[index].start();
+        }
+        logger.info("Transfer group commit started with {} workers, batches of up to {} transfers",
+                workerCount, maxBatchSize);
+    }
+
+    /**
+     * Stops accepting transfers and lets the workers apply the queued ones.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (workers == null) {
+            return;
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Queues the transfer, waits for the group carrying it to commit and returns its source account.
+     * Runs at most once per idempotency key, like {@link IdempotencyService#execute}.
+     */
+    public AccountResponse transfer(String idempotencyKey, String requestHash, TransferRequest request) {
+        return bankingMetrics.recordOperation("transfer", () -> idempotencyService.executeWithRecorder(
+                idempotencyKey,
+                requestHash,
+                recorder -> await(submit(request, recorder))
+        ));
+    }
+
+    private CompletableFuture<AccountResponse> submit(TransferRequest request, UnaryOperator<AccountResponse> recorder) {
+        if (!running) {
+            throw new IllegalStateException("Transfer group commit is not accepting transfers");
+        }
+        PendingTransfer pending = new PendingTransfer(request, recorder, new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            throw new ServerBusyException("Transfer queue is full, please retry");
+        }
+        return pending.result();
+    }
+
+    /**
+     * Waits for a queued transfer. A transfer still queued when the wait times out may be applied later;
+     * its idempotency claim is released by then, so the recorder rejects it and it is undone.
+     */
+    private AccountResponse await(CompletableFuture<AccountResponse> result) {
+        try {
+            return result.get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new ServerBusyException("Transfer was not applied in time, please retry");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServerBusyException("Interrupted while waiting for the transfer");
+        }
+    }
+
+    private void drain() {
+        List<PendingTransfer> batch = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Adds queued transfers to the batch until it is full or the window since the first one has passed.
+     */
+    private void collect(List<PendingTransfer> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingTransfer next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void apply(List<PendingTransfer> batch) {
+        try {
+            applyGroup(batch);
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(ex);
+                return;
+            }
+            logger.warn("Group of {} transfers failed, applying them one by one", batch.size(), ex);
+            for (PendingTransfer pending : batch) {
+                try {
+                    applyGroup(List.of(pending));
+                } catch (RuntimeException singleEx) {
+                    pending.result().completeExceptionally(singleEx);
+                }
+            }
+        }
+    }
+
+    private void applyGroup(List<PendingTransfer> group) {
+        List<TransferRequest> requests = new ArrayList<>(group.size());
+        List<UnaryOperator<AccountResponse>> recorders = new ArrayList<>(group.size());
+        for (PendingTransfer pending : group) {
+            requests.add(pending.request());
+            recorders.add(pending.recorder());
+        }
+
+        List<TransferOutcome> outcomes = accountService.transferGroup(requests, recorders);
+        bankingMetrics.recordGroupCommit(group.size());
+
+        for (int index = 0; index < group.size(); index++) {
+            TransferOutcome outcome = outcomes.get(index);
+            if (outcome.isApplied()) {
+                group.get(index).result().complete(outcome.account());
+            } else {
+                group.get(index).result().completeExceptionally(outcome.failure());
+            }
+        }
+    }
+
+    private record PendingTransfer(TransferRequest request,
+                                   UnaryOperator<AccountResponse> recorder,
+                                   CompletableFuture<AccountResponse> result) {
+    }
+}
@@ -0,0 +1,155 @@
+package com.pratham.banking.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.IdempotencyRecord;
+import com.pratham.banking.entity.User;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.IdempotencyRepository;
+import com.pratham.banking.repository.UserRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AccountControllerLegacyTransferTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private IdempotencyRepository idempotencyRepository;
+
+    private String username;
+    private Long sourceId;
+    private Long destinationId;
+
+    @BeforeEach
+    void setUp() {
+        username = "legacy-" + UUID.randomUUID();
+        User owner = userRepository.save(User.builder().username(username).password("secret").build());
+        sourceId = accountRepository.save(Account.builder().user(owner).balance(10_000).build()).getId();
+        destinationId = accountRepository.save(Account.builder().user(owner).balance(0).build()).getId();
+    }
+
+    @Test
+    void replaysTransferStoredUnderBareKeyForAmountsWithoutTwoDecimals() throws Exception {
+        for (String amount : new String[] {"40", "40.5", "\"40\""}) {
+            String key = UUID.randomUUID().toString();
+            String body = transferBody(amount);
+            storeLegacyRecord(key, body, "9999");
+
+            transfer(key, body)
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.balance").value(9_999.00));
+        }
+
+        assertThat(balance(sourceId)).isEqualTo(10_000);
+        assertThat(balance(destinationId)).isZero();
+    }
+
+    @Test
+    void executesTransferWhoseBodyDiffersFromTheStoredOne() throws Exception {
+        String key = UUID.randomUUID().toString();
+        storeLegacyRecord(key, transferBody("40"), "9999");
+
+        transfer(key, transferBody("41"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.balance").value(59.00));
+
+        assertThat(balance(sourceId)).isEqualTo(5_900);
+        assertThat(balance(destinationId)).isEqualTo(4_100);
+    }
+
+    private ResultActions transfer(String key, String body) throws Exception {
+        return mockMvc.perform(post("/api/accounts/transfer")
+                .with(user(username).roles("USER"))
+                .header("Idempotency-Key", key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body));
+    }
+
+    private String transferBody(String amount) {
+        return "{\"fromAccountId\":" + sourceId + ",\"toAccountId\":" + destinationId + ",\"amount\":" + amount + "}";
+    }
+
+    /**
+     * Stores the record as the pre-upgrade release did: the bare key, the hash of its {@code BigDecimal}
+     * DTO as read from the body, and the response in the JSON envelope.
+     */
+    private void storeLegacyRecord(String key, String body, String balance) throws Exception {
+        String requestJson = objectMapper.writeValueAsString(objectMapper.readValue(body, PreUpgradeTransferRequest.class));
+        String requestHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(requestJson.getBytes(StandardCharsets.UTF_8)));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", sourceId);
+        response.put("userId", 1);
+        response.put("balance", new BigDecimal(balance));
+        response.put("createdAt", "2024-01-01T10:00:00");
+        Map<String, String> envelope = Map.of(
+                "className", "com.pratham.banking.dto.AccountResponse",
+                "payload", objectMapper.writeValueAsString(response));
+
+        idempotencyRepository.saveAndFlush(IdempotencyRecord.builder()
+                .key(key)
+                .requestHash(requestHash)
+                .responseBody(objectMapper.writeValueAsString(envelope))
+                .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .build());
+    }
+
+    private long balance(Long accountId) {
+        return accountRepository.findById(accountId).orElseThrow().getBalance();
+    }
+
+    /**
+     * The transfer DTO as it was before amounts became minor units.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class PreUpgradeTransferRequest {
+        private Long fromAccountId;
+        private Long toAccountId;
+        private BigDecimal amount;
+    }
+}
@@ -0,0 +1,106 @@
+package com.pratham.banking.entity;
+
+import com.pratham.banking.exception.InvalidAmountException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    @Test
+    void parsesPlainNumbers() {
+        assertThat(Money.parse("12")).isEqualTo(1200);
+        assertThat(Money.parse("100.25")).isEqualTo(10025);
+        assertThat(Money.parse("0.5")).isEqualTo(50);
+        assertThat(Money.parse(".5")).isEqualTo(50);
+        assertThat(Money.parse("7.")).isEqualTo(700);
+        assertThat(Money.parse("-0.05")).isEqualTo(-5);
+        assertThat(Money.parse("+3")).isEqualTo(300);
+    }
+
+    @Test
+    void acceptsTrailingZerosBeyondScale() {
+        assertThat(Money.parse("1.2300")).isEqualTo(123);
+    }
+
+    @Test
+    void rejectsSignificantDigitsBeyondScale() {
+        assertThatThrownBy(() -> Money.parse("1.001"))
+                .isInstanceOf(InvalidAmountException.class)
+                .hasMessageContaining("decimal places");
+    }
+
+    @Test
+    void parsesExponentNotation() {
+        assertThat(Money.parse("1.5e2")).isEqualTo(15000);
+        assertThat(Money.parse("25E-1")).isEqualTo(250);
+        assertThatThrownBy(() -> Money.parse("1e-3")).isInstanceOf(InvalidAmountException.class);
+    }
+
+    @Test
+    void rejectsMalformedText() {
+        for (String text : new String[] {"", "-", ".", "abc", "1.2.3", "1,5", "1e", "12a"}) {
+            assertThatThrownBy(() -> Money.parse(text))
+                    .as(text)
+                    .isInstanceOf(InvalidAmountException.class);
+        }
+    }
+
+    @Test
+    void parsesUpToMax() {
+        assertThat(Money.parse("999999999999999.99")).isEqualTo(Money.MAX);
+        assertThat(Money.parse("-999999999999999.99")).isEqualTo(-Money.MAX);
+        assertThatThrownBy(() -> Money.parse("1000000000000000"))
+                .isInstanceOf(InvalidAmountException.class)
+                .hasMessageContaining("range");
+        assertThatThrownBy(() -> Money.parse("99999999999999999999999"))
+                .isInstanceOf(InvalidAmountException.class)
+                .hasMessageContaining("range");
+    }
+
+    @Test
+    void parsesWithinCharRange() {
+        char[] text = "[12.34]".toCharArray();
+        assertThat(Money.parse(text, 1, 5)).isEqualTo(1234);
+    }
+
+    @Test
+    void convertsDecimals() {
+        assertThat(Money.fromDecimal(new BigDecimal("12.34"))).isEqualTo(1234);
+        assertThat(Money.fromDecimal(new BigDecimal("5"))).isEqualTo(500);
+        assertThat(Money.fromDecimal(new BigDecimal("1.500"))).isEqualTo(150);
+        assertThat(Money.fromDecimal(new BigDecimal("1E+2"))).isEqualTo(10000);
+        assertThat(Money.fromDecimal(new BigDecimal("-0.01"))).isEqualTo(-1);
+        assertThat(Money.fromDecimal(Money.toDecimal(Money.MAX))).isEqualTo(Money.MAX);
+    }
+
+    @Test
+    void rejectsDecimalsThatDoNotFit() {
+        assertThatThrownBy(() -> Money.fromDecimal(new BigDecimal("0.001")))
+                .isInstanceOf(InvalidAmountException.class)
+                .hasMessageContaining("decimal places");
+        assertThatThrownBy(() -> Money.fromDecimal(new BigDecimal("1000000000000000")))
+                .isInstanceOf(InvalidAmountException.class)
+                .hasMessageContaining("range");
+        assertThatThrownBy(() -> Money.fromDecimal(new BigDecimal("1E+30")))
+                .isInstanceOf(InvalidAmountException.class)
+                .hasMessageContaining("range");
+    }
+
+    @Test
+    void checksRangeOfArithmetic() {
+        assertThat(Money.add(Money.MAX - 1, 1)).isEqualTo(Money.MAX);
+        assertThatThrownBy(() -> Money.add(Money.MAX, 1)).isInstanceOf(InvalidAmountException.class);
+        assertThatThrownBy(() -> Money.subtract(-Money.MAX, 1)).isInstanceOf(InvalidAmountException.class);
+    }
+
+    @Test
+    void formatsWithTwoFractionDigits() {
+        assertThat(Money.toString(10000)).isEqualTo("100.00");
+        assertThat(Money.toString(-5)).isEqualTo("-0.05");
+        assertThat(Money.toString(Money.MAX)).isEqualTo("999999999999999.99");
+    }
+}
@@ -0,0 +1,159 @@
+package com.pratham.banking.filter;
+
+import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.User;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.IdempotencyRepository;
+import com.pratham.banking.repository.UserRepository;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class IdempotencyFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IdempotencyFilter idempotencyFilter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private IdempotencyRepository idempotencyRepository;
+
+    private String username;
+    private Long accountId;
+
+    @BeforeEach
+    void setUp() {
+        username = "filter-" + UUID.randomUUID();
+        User owner = userRepository.save(User.builder().username(username).password("secret").build());
+        accountId = accountRepository.save(Account.builder().user(owner).balance(10_000).build()).getId();
+    }
+
+    @Test
+    void replaysStoredStatusContentTypeAndBytesWithoutReachingTheHandler() throws Exception {
+        String key = UUID.randomUUID().toString();
+        MockHttpServletResponse first = perform(key, "deposit", "25")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.balance").value(125.00))
+                .andReturn().getResponse();
+
+        // A handler run for the retry would report this balance.
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        account.setBalance(50_000);
+        accountRepository.save(account);
+
+        MockHttpServletResponse retried = perform(key, "deposit", "25").andReturn().getResponse();
+
+        assertThat(retried.getStatus()).isEqualTo(first.getStatus());
+        assertThat(retried.getContentType()).isEqualTo(first.getContentType());
+        assertThat(retried.getContentAsByteArray()).isEqualTo(first.getContentAsByteArray());
+        assertThat(balance()).isEqualTo(50_000);
+    }
+
+    @Test
+    void doesNotStoreErrorResponses() throws Exception {
+        String key = UUID.randomUUID().toString();
+        perform(key, "withdraw", "150").andExpect(status().isBadRequest());
+
+        assertThat(idempotencyRepository.findById(username + ":" + key)).isEmpty();
+
+        perform(UUID.randomUUID().toString(), "deposit", "100").andExpect(status().isOk());
+        perform(key, "withdraw", "150")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.balance").value(50.00));
+        assertThat(balance()).isEqualTo(5_000);
+    }
+
+    @Test
+    void retriesRequestWhoseHandlerResolvedALockConflict() throws Exception {
+        // MockMvc's filter chain runs only once, so the filter is driven with a chain that can run again.
+        String path = "/api/accounts/" + accountId + "/deposit";
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent("{\"amount\":25}".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        AtomicInteger attempts = new AtomicInteger();
+        FilterChain handler = (chainRequest, chainResponse) -> {
+            HttpServletResponse httpResponse = (HttpServletResponse) chainResponse;
+            if (attempts.incrementAndGet() == 1) {
+                // As the exception resolver leaves a lock conflict: rendered, with the exception recorded.
+                chainRequest.setAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE,
+                        new CannotAcquireLockException("Lock wait timeout"));
+                httpResponse.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                httpResponse.getWriter().write("{\"success\":false}");
+                return;
+            }
+            httpResponse.setStatus(HttpServletResponse.SC_OK);
+            httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            httpResponse.getWriter().write("{\"success\":true}");
+        };
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                username, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        try {
+            idempotencyFilter.doFilter(request, response, handler);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(response.getContentAsString()).isEqualTo("{\"success\":true}");
+        assertThat(idempotencyRepository.findById(username + ":" + request.getHeader(
+                IdempotencyFilter.IDEMPOTENCY_KEY_HEADER))).isPresent();
+    }
+
+    private ResultActions perform(String key, String operation, String amount) throws Exception {
+        String path = "/api/accounts/" + accountId + "/" + operation;
+        // The filter matches on the servlet path, which MockMvc leaves empty unless told.
+        return mockMvc.perform(post(path)
+                .servletPath(path)
+                .with(user(username).roles("USER"))
+                .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":" + amount + "}"));
+    }
+
+    private long balance() {
+        return accountRepository.findById(accountId).orElseThrow().getBalance();
+    }
+}
@@ -0,0 +1,113 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.entity.AccountLockMode;
+import com.pratham.banking.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AccountLockingPolicyTest {
+
+    private static final long ACCOUNT_ID = 1L;
+
+    private AccountRepository accountRepository;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository = mock(AccountRepository.class);
+        when(accountRepository.findLockModeById(anyLong())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void adaptiveAccountStaysOptimisticBelowThreshold() {
+        AccountLockingPolicy policy = policy(AccountLockMode.ADAPTIVE, 60_000);
+
+        policy.recordConflict(ACCOUNT_ID);
+        policy.recordConflict(ACCOUNT_ID);
+
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isTrue();
+    }
+
+    @Test
+    void adaptiveAccountEscalatesAtThreshold() {
+        AccountLockingPolicy policy = policy(AccountLockMode.ADAPTIVE, 60_000);
+
+        recordConflicts(policy, ACCOUNT_ID, 3);
+
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isFalse();
+        assertThat(policy.isOptimistic(2L)).isTrue();
+    }
+
+    @Test
+    void adaptiveAccountReturnsToOptimisticAfterCooldown() throws InterruptedException {
+        AccountLockingPolicy policy = policy(AccountLockMode.ADAPTIVE, 50);
+
+        recordConflicts(policy, ACCOUNT_ID, 3);
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isFalse();
+
+        Thread.sleep(100);
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isTrue();
+    }
+
+    @Test
+    void fixedModesIgnoreConflicts() {
+        AccountLockingPolicy pessimistic = policy(AccountLockMode.PESSIMISTIC, 60_000);
+        AccountLockingPolicy optimistic = policy(AccountLockMode.OPTIMISTIC, 60_000);
+
+        recordConflicts(pessimistic, ACCOUNT_ID, 5);
+        recordConflicts(optimistic, ACCOUNT_ID, 5);
+
+        assertThat(pessimistic.isOptimistic(ACCOUNT_ID)).isFalse();
+        assertThat(optimistic.isOptimistic(ACCOUNT_ID)).isTrue();
+    }
+
+    @Test
+    void accountModeOverridesDefault() {
+        when(accountRepository.findLockModeById(ACCOUNT_ID)).thenReturn(Optional.of(AccountLockMode.ADAPTIVE));
+        AccountLockingPolicy policy = policy(AccountLockMode.PESSIMISTIC, 60_000);
+
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isTrue();
+        recordConflicts(policy, ACCOUNT_ID, 3);
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isFalse();
+        assertThat(policy.isOptimistic(2L)).isFalse();
+    }
+
+    @Test
+    void reloadsAccountModeAfterCacheEntryExpires() throws InterruptedException {
+        AccountLockingPolicy policy = new AccountLockingPolicy(accountRepository, AccountLockMode.PESSIMISTIC, 3, 60_000, 60_000, 50, 100);
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isFalse();
+
+        // Another instance switches the account to optimistic locking.
+        when(accountRepository.findLockModeById(ACCOUNT_ID)).thenReturn(Optional.of(AccountLockMode.OPTIMISTIC));
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isFalse();
+
+        Thread.sleep(100);
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isTrue();
+    }
+
+    @Test
+    void settingLockModeClearsContention() {
+        AccountLockingPolicy policy = policy(AccountLockMode.ADAPTIVE, 60_000);
+        recordConflicts(policy, ACCOUNT_ID, 3);
+
+        policy.setLockMode(ACCOUNT_ID, AccountLockMode.ADAPTIVE);
+
+        assertThat(policy.isOptimistic(ACCOUNT_ID)).isTrue();
+    }
+
+    private AccountLockingPolicy policy(AccountLockMode defaultMode, long cooldownMs) {
+        return new AccountLockingPolicy(accountRepository, defaultMode, 3, 60_000, cooldownMs, 60_000, 100);
+    }
+
+    private static void recordConflicts(AccountLockingPolicy policy, long accountId, int conflicts) {
+        for (int conflict = 0; conflict < conflicts; conflict++) {
+            policy.recordConflict(accountId);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.dto.EnableShardingRequest;
+import com.pratham.banking.exception.InsufficientBalanceException;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "app.transfer.engine=CONDITIONAL_UPDATE",
+        "app.account.sharding.enabled=true"
+})
+@ActiveProfiles("test")
+class AccountServiceConditionalTransferTest extends AccountServiceTestSupport {
+
+    @Test
+    void returnsDebitedSourceInEitherLockOrder() {
+        AccountResponse lowerSource = accountService.transfer(transfer(sourceId, destinationId, 3_000));
+        AccountResponse higherSource = accountService.transfer(transfer(destinationId, sourceId, 1_000));
+
+        assertThat(lowerSource.getId()).isEqualTo(sourceId);
+        assertThat(lowerSource.getUserId()).isEqualTo(user.getId());
+        assertThat(lowerSource.getBalance()).isEqualTo(7_000);
+        assertThat(lowerSource.getCreatedAt()).isNotNull();
+        assertThat(higherSource.getBalance()).isEqualTo(7_000);
+        assertThat(balance(sourceId)).isEqualTo(8_000);
+        assertThat(balance(destinationId)).isEqualTo(7_000);
+    }
+
+    @Test
+    void rejectsShortBalanceWithoutMovingFunds() {
+        assertThatThrownBy(() -> accountService.transfer(transfer(sourceId, destinationId, 10_001)))
+                .isInstanceOf(InsufficientBalanceException.class);
+
+        assertThat(balance(sourceId)).isEqualTo(10_000);
+        assertThat(balance(destinationId)).isEqualTo(5_000);
+    }
+
+    @Test
+    void includesShardBalanceOfShardedSource() {
+        accountService.enableSharding(sourceId, EnableShardingRequest.builder().shardCount(2).build());
+        accountService.transfer(transfer(destinationId, sourceId, 4_000));
+
+        AccountResponse source = accountService.transfer(transfer(sourceId, destinationId, 1_000));
+
+        assertThat(source.getBalance()).isEqualTo(13_000);
+        assertThat(accountService.getAccountById(sourceId).getBalance()).isEqualTo(13_000);
+    }
+}
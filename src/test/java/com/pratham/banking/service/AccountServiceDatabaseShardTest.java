@@ -0,0 +1,67 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.dto.CreateAccountRequest;
+import com.pratham.banking.entity.User;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard-home;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=KEY,VALUE",
+        "app.datasource.shards.enabled=true",
+        "app.datasource.shards.urls=jdbc:h2:mem:shard-1;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=KEY",
+        "app.datasource.shards.id-range=1000000"
+})
+@ActiveProfiles("test")
+class AccountServiceDatabaseShardTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ShardStepFence shardStepFence;
+
+    @Autowired
+    private DatabaseShardRouter databaseShardRouter;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void retryingAccountCreationUnderTheSameKeyCreatesOneAccount() {
+        User user = newUser();
+        if (databaseShardRouter.shardForNewAccount(user.getId()) == DatabaseShardRouter.HOME_SHARD) {
+            user = newUser();
+        }
+        int shard = databaseShardRouter.shardForNewAccount(user.getId());
+        assertThat(shard).isNotEqualTo(DatabaseShardRouter.HOME_SHARD);
+        CreateAccountRequest request = CreateAccountRequest.builder().userId(user.getId()).build();
+        String key = user.getUsername() + ":" + UUID.randomUUID();
+
+        // As if completing the idempotency record had failed after the first attempt's shard commit.
+        AccountResponse first = shardStepFence.withKey(key, () -> accountService.createAccount(request));
+        AccountResponse retried = shardStepFence.withKey(key, () -> accountService.createAccount(request));
+
+        assertThat(retried.getId()).isEqualTo(first.getId());
+        Long userId = user.getId();
+        assertThat(databaseShardRouter.read(shard, () -> accountRepository.findByUser_Id(userId))).hasSize(1);
+    }
+
+    private User newUser() {
+        return userRepository.save(User.builder()
+                .username("shard-" + UUID.randomUUID())
+                .password("secret")
+                .build());
+    }
+}
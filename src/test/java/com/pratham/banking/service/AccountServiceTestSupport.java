@@ -0,0 +1,53 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.TransferRequest;
+import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.User;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.UUID;
+
+/**
+ * Fixture shared by the {@link AccountService} transfer tests: one user owning a source account with
+ * 10_000 and a destination account with 5_000 minor units, the source having the lower id.
+ */
+abstract class AccountServiceTestSupport {
+
+    @Autowired
+    protected AccountService accountService;
+
+    @Autowired
+    protected AccountRepository accountRepository;
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    protected User user;
+    protected Long sourceId;
+    protected Long destinationId;
+
+    @BeforeEach
+    void createAccounts() {
+        user = userRepository.save(User.builder()
+                .username("account-" + UUID.randomUUID())
+                .password("secret")
+                .build());
+        sourceId = accountRepository.save(Account.builder().user(user).balance(10_000).build()).getId();
+        destinationId = accountRepository.save(Account.builder().user(user).balance(5_000).build()).getId();
+    }
+
+    protected long balance(Long accountId) {
+        return accountRepository.findById(accountId).orElseThrow().getBalance();
+    }
+
+    protected static TransferRequest transfer(Long fromAccountId, Long toAccountId, long amount) {
+        return TransferRequest.builder()
+                .fromAccountId(fromAccountId)
+                .toAccountId(toAccountId)
+                .amount(amount)
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.dto.TransferRequest;
+import com.pratham.banking.exception.IdempotencyInProgressException;
+import com.pratham.banking.exception.InsufficientBalanceException;
+import com.pratham.banking.exception.InvalidTransferException;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AccountServiceTransferGroupTest extends AccountServiceTestSupport {
+
+    @Test
+    void rejectsFailingTransfersWithoutAffectingTheOthers() {
+        List<TransferRequest> transfers = List.of(
+                transfer(sourceId, destinationId, 3_000),
+                transfer(sourceId, destinationId, 100_000),
+                transfer(sourceId, Long.MAX_VALUE, 100),
+                transfer(sourceId, sourceId, 100),
+                transfer(destinationId, sourceId, 1_000)
+        );
+
+        List<TransferOutcome> outcomes = accountService.transferGroup(transfers, null);
+
+        assertThat(outcomes).extracting(TransferOutcome::isApplied)
+                .containsExactly(true, false, false, false, true);
+        assertThat(outcomes.get(0).account().getBalance()).isEqualTo(7_000);
+        assertThat(outcomes.get(1).failure()).isInstanceOf(InsufficientBalanceException.class);
+        assertThat(outcomes.get(2).failure()).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(outcomes.get(3).failure()).isInstanceOf(InvalidTransferException.class);
+        assertThat(balance(sourceId)).isEqualTo(8_000);
+        assertThat(balance(destinationId)).isEqualTo(7_000);
+    }
+
+    @Test
+    void undoesTransferWhoseRecorderLostItsClaim() {
+        List<TransferRequest> transfers = List.of(
+                transfer(sourceId, destinationId, 1_000),
+                transfer(sourceId, destinationId, 2_000),
+                transfer(destinationId, sourceId, 500)
+        );
+        List<AccountResponse> recorded = new ArrayList<>();
+        UnaryOperator<AccountResponse> recorder = account -> {
+            recorded.add(account);
+            return account;
+        };
+        UnaryOperator<AccountResponse> lostClaim = account -> {
+            throw new IdempotencyInProgressException("Claim was taken over");
+        };
+
+        List<TransferOutcome> outcomes = accountService.transferGroup(transfers, List.of(recorder, lostClaim, recorder));
+
+        assertThat(outcomes).extracting(TransferOutcome::isApplied).containsExactly(true, false, true);
+        assertThat(outcomes.get(1).failure()).isInstanceOf(IdempotencyInProgressException.class);
+        assertThat(recorded).extracting(AccountResponse::getBalance).containsExactly(9_000L, 5_500L);
+        assertThat(balance(sourceId)).isEqualTo(9_500);
+        assertThat(balance(destinationId)).isEqualTo(5_500);
+    }
+}
@@ -0,0 +1,172 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.TransferRequest;
+import com.pratham.banking.dto.TransferSubmissionResponse;
+import com.pratham.banking.entity.TransferSubmissionStatus;
+import com.pratham.banking.exception.IdempotencyConflictException;
+import com.pratham.banking.repository.TransferSubmissionRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = {
+        "app.transfer.async.enabled=true",
+        "app.transfer.async.workers=1",
+        "app.transfer.async.poll-interval-ms=20"
+})
+@ActiveProfiles("test")
+@SpyBean(AccountService.class)
+class AsyncTransferServiceTest extends AccountServiceTestSupport {
+
+    private static final long POISON_AMOUNT = 777;
+    private static final long CONTENDED_AMOUNT = 555;
+    private static final long RACED_AMOUNT = 333;
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+
+    @Autowired
+    private TransferSubmissionRepository transferSubmissionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void resubmittingTheSameRequestReturnsTheQueuedSubmission() throws InterruptedException {
+        String key = UUID.randomUUID().toString();
+
+        TransferSubmissionResponse first = submit(key, "hash", 1_000);
+        TransferSubmissionResponse retried = submit(key, "hash", 1_000);
+
+        assertThat(retried.getId()).isEqualTo(first.getId());
+        awaitStatus(first.getId(), TransferSubmissionStatus.COMPLETED);
+        assertThat(submit(key, "hash", 1_000).getStatus()).isEqualTo(TransferSubmissionStatus.COMPLETED);
+        assertThat(balance(sourceId)).isEqualTo(9_000);
+        assertThat(balance(destinationId)).isEqualTo(6_000);
+    }
+
+    @Test
+    void rejectsKeyReusedForDifferentRequest() {
+        String key = UUID.randomUUID().toString();
+        submit(key, "hash", 1_000);
+
+        assertThatThrownBy(() -> submit(key, "other-hash", 2_000))
+                .isInstanceOf(IdempotencyConflictException.class);
+    }
+
+    @Test
+    void marksSubmissionThatCannotBeAppliedFailedAndAppliesTheOthers() throws InterruptedException {
+        doAnswer(invocation -> {
+            if (containsAmount(invocation, POISON_AMOUNT)) {
+                throw new IllegalStateException("Cannot be applied");
+            }
+            return invocation.callRealMethod();
+        }).when(accountService).transferGroup(any(), any());
+
+        TransferSubmissionResponse poison = submit(UUID.randomUUID().toString(), "poison", POISON_AMOUNT);
+        TransferSubmissionResponse queuedBehind = submit(UUID.randomUUID().toString(), "behind", 1_000);
+
+        awaitStatus(poison.getId(), TransferSubmissionStatus.FAILED);
+        assertThat(asyncTransferService.getSubmission(poison.getId()).getFailureReason())
+                .isEqualTo("Transfer could not be processed");
+        awaitStatus(queuedBehind.getId(), TransferSubmissionStatus.COMPLETED);
+        assertThat(balance(sourceId)).isEqualTo(9_000);
+    }
+
+    @Test
+    void keepsSubmissionPendingWhileItFailsTransiently() throws InterruptedException {
+        AtomicBoolean contended = new AtomicBoolean(true);
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (containsAmount(invocation, CONTENDED_AMOUNT) && contended.get()) {
+                attempts.incrementAndGet();
+                throw new CannotAcquireLockException("Lock wait timeout");
+            }
+            return invocation.callRealMethod();
+        }).when(accountService).transferGroup(any(), any());
+
+        TransferSubmissionResponse submission = submit(UUID.randomUUID().toString(), "hash", CONTENDED_AMOUNT);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (attempts.get() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(attempts.get()).isGreaterThanOrEqualTo(3);
+        assertThat(asyncTransferService.getSubmission(submission.getId()).getStatus())
+                .isEqualTo(TransferSubmissionStatus.PENDING);
+
+        contended.set(false);
+        awaitStatus(submission.getId(), TransferSubmissionStatus.COMPLETED);
+        assertThat(balance(sourceId)).isEqualTo(10_000 - CONTENDED_AMOUNT);
+    }
+
+    @Test
+    void leavesSubmissionFinishedByAnotherWorkerAsThatWorkerRecordedIt() throws InterruptedException {
+        String key = UUID.randomUUID().toString();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch applied = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (!containsAmount(invocation, RACED_AMOUNT)) {
+                return invocation.callRealMethod();
+            }
+            // Another worker completes the submission after this one read it.
+            transactionTemplate.executeWithoutResult(status -> transferSubmissionRepository.finish(
+                    transferSubmissionRepository.findByIdempotencyKey(user.getUsername() + ":" + key)
+                            .orElseThrow().getId(),
+                    TransferSubmissionStatus.COMPLETED, null, LocalDateTime.now()));
+            try {
+                return invocation.callRealMethod();
+            } finally {
+                applied.countDown();
+            }
+        }).when(accountService).transferGroup(any(), any());
+
+        TransferSubmissionResponse raced = submit(key, "hash", RACED_AMOUNT);
+        assertThat(applied.await(10, TimeUnit.SECONDS)).isTrue();
+        // The single worker takes this one only after it has finished the raced batch.
+        awaitStatus(submit(UUID.randomUUID().toString(), "hash", 1_000).getId(), TransferSubmissionStatus.COMPLETED);
+
+        TransferSubmissionResponse recorded = asyncTransferService.getSubmission(raced.getId());
+        assertThat(recorded.getStatus()).isEqualTo(TransferSubmissionStatus.COMPLETED);
+        assertThat(recorded.getFailureReason()).isNull();
+        assertThat(balance(sourceId)).isEqualTo(9_000);
+        assertThat(balance(destinationId)).isEqualTo(6_000);
+    }
+
+    private TransferSubmissionResponse submit(String key, String requestHash, long amount) {
+        return asyncTransferService.submit(user.getUsername(), key, requestHash,
+                transfer(sourceId, destinationId, amount));
+    }
+
+    private void awaitStatus(String id, TransferSubmissionStatus expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (asyncTransferService.getSubmission(id).getStatus() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(asyncTransferService.getSubmission(id).getStatus()).isEqualTo(expected);
+    }
+
+    private static boolean containsAmount(InvocationOnMock invocation, long amount) {
+        List<TransferRequest> transfers = invocation.getArgument(0);
+        return transfers.stream().anyMatch(transfer -> transfer.getAmount() == amount);
+    }
+}
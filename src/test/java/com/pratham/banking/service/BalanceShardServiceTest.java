@@ -0,0 +1,72 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.repository.AccountBalanceShardRepository;
+import com.pratham.banking.repository.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceShardServiceTest {
+
+    private static final long ACCOUNT_ID = 1L;
+
+    private AccountRepository accountRepository;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository = mock(AccountRepository.class);
+        when(accountRepository.findShardCountById(anyLong())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void cachesUnshardedAccounts() {
+        BalanceShardService service = service(60_000, 100);
+
+        assertThat(service.isSharded(ACCOUNT_ID)).isFalse();
+        assertThat(service.isSharded(ACCOUNT_ID)).isFalse();
+
+        verify(accountRepository, times(1)).findShardCountById(ACCOUNT_ID);
+    }
+
+    @Test
+    void reloadsShardCountAfterCacheEntryExpires() throws InterruptedException {
+        BalanceShardService service = service(50, 100);
+        assertThat(service.isSharded(ACCOUNT_ID)).isFalse();
+
+        // Another instance shards the account.
+        when(accountRepository.findShardCountById(ACCOUNT_ID)).thenReturn(Optional.of(4));
+        assertThat(service.isSharded(ACCOUNT_ID)).isFalse();
+
+        Thread.sleep(100);
+        assertThat(service.isSharded(ACCOUNT_ID)).isTrue();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAccountsBeyondMaxEntries() {
+        BalanceShardService service = service(60_000, 2);
+
+        service.isSharded(1L);
+        service.isSharded(2L);
+        service.isSharded(1L);
+        service.isSharded(3L);
+        service.isSharded(1L);
+        service.isSharded(2L);
+
+        verify(accountRepository, times(1)).findShardCountById(1L);
+        verify(accountRepository, times(2)).findShardCountById(2L);
+    }
+
+    private BalanceShardService service(long countCacheTtlMs, int countCacheMaxEntries) {
+        return new BalanceShardService(accountRepository, mock(AccountBalanceShardRepository.class),
+                new BankingMetrics(new SimpleMeterRegistry()), true, countCacheTtlMs, countCacheMaxEntries);
+    }
+}
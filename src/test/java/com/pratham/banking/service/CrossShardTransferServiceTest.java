@@ -0,0 +1,199 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.CreateAccountRequest;
+import com.pratham.banking.entity.CrossShardTransfer;
+import com.pratham.banking.entity.CrossShardTransferStatus;
+import com.pratham.banking.entity.Transaction;
+import com.pratham.banking.entity.TransactionType;
+import com.pratham.banking.entity.User;
+import com.pratham.banking.exception.ResourceNotFoundException;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.CrossShardCreditRepository;
+import com.pratham.banking.repository.CrossShardTransferRepository;
+import com.pratham.banking.repository.TransactionRepository;
+import com.pratham.banking.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard-home;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=KEY,VALUE",
+        "app.datasource.shards.enabled=true",
+        "app.datasource.shards.urls=jdbc:h2:mem:shard-1;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=KEY",
+        "app.datasource.shards.id-range=1000000"
+})
+@ActiveProfiles("test")
+class CrossShardTransferServiceTest {
+
+    @Autowired
+    private CrossShardTransferService crossShardTransferService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private DatabaseShardRouter databaseShardRouter;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CrossShardTransferRepository crossShardTransferRepository;
+
+    @Autowired
+    private CrossShardCreditRepository crossShardCreditRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private Long sourceId;
+    private Long destinationId;
+
+    @BeforeEach
+    void setUp() {
+        // Consecutive user ids land on different shards.
+        sourceId = createAccount();
+        destinationId = createAccount();
+        assertThat(shardOf(sourceId)).isNotEqualTo(shardOf(destinationId));
+
+        databaseShardRouter.write(shardOf(sourceId), () -> accountRepository.credit(sourceId, 10_000));
+    }
+
+    @Test
+    void settlingACompletedTransferAgainCreditsOnce() {
+        crossShardTransferService.transfer(sourceId, destinationId, 3_000, "transfer");
+        CrossShardTransfer transfer = findTransfer();
+        assertThat(transfer.getStatus()).isEqualTo(CrossShardTransferStatus.COMPLETED);
+
+        assertThat(crossShardTransferService.settle(transfer)).isTrue();
+        assertThat(crossShardTransferService.settle(transfer)).isTrue();
+
+        assertThat(balance(sourceId)).isEqualTo(7_000);
+        assertThat(balance(destinationId)).isEqualTo(3_000);
+        assertThat(findTransfer().getStatus()).isEqualTo(CrossShardTransferStatus.COMPLETED);
+        assertThat(databaseShardRouter.read(shardOf(destinationId), () -> crossShardCreditRepository.existsById(transfer.getId())))
+                .isTrue();
+    }
+
+    @Test
+    void settlingAPendingTransferWhoseCreditCommittedOnlyClosesIt() {
+        crossShardTransferService.transfer(sourceId, destinationId, 3_000, "transfer");
+        CrossShardTransfer transfer = findTransfer();
+        // As if the step closing the transfer had failed after the credit committed.
+        databaseShardRouter.write(shardOf(sourceId), () -> crossShardTransferRepository.updateStatus(
+                transfer.getId(), CrossShardTransferStatus.COMPLETED, CrossShardTransferStatus.PENDING));
+
+        assertThat(crossShardTransferService.settle(transfer)).isTrue();
+
+        assertThat(balance(destinationId)).isEqualTo(3_000);
+        assertThat(findTransfer().getStatus()).isEqualTo(CrossShardTransferStatus.COMPLETED);
+    }
+
+    @Test
+    void refundsTransferToMissingAccountOnce() {
+        int sourceShard = shardOf(sourceId);
+        Long missingId = databaseShardRouter.firstId(shardOf(destinationId)) + 900_000;
+        CrossShardTransfer transfer = CrossShardTransfer.builder()
+                .id(UUID.randomUUID().toString())
+                .fromAccountId(sourceId)
+                .toAccountId(missingId)
+                .amount(2_000)
+                .status(CrossShardTransferStatus.PENDING)
+                .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .build();
+        databaseShardRouter.write(sourceShard, () -> {
+            accountRepository.debitIfSufficient(sourceId, 2_000);
+            return crossShardTransferRepository.save(transfer);
+        });
+        assertThat(balance(sourceId)).isEqualTo(8_000);
+
+        assertThat(crossShardTransferService.settle(transfer)).isFalse();
+        assertThat(crossShardTransferService.settle(transfer)).isFalse();
+
+        assertThat(balance(sourceId)).isEqualTo(10_000);
+        assertThat(findTransfer().getStatus()).isEqualTo(CrossShardTransferStatus.REFUNDED);
+    }
+
+    @Test
+    void refundKeepsTheDebitRowAndRecordsACompensatingCredit() {
+        Long missingId = databaseShardRouter.firstId(shardOf(destinationId)) + 900_000;
+        CrossShardTransfer transfer = CrossShardTransfer.builder()
+                .id(UUID.randomUUID().toString())
+                .fromAccountId(sourceId)
+                .toAccountId(missingId)
+                .amount(2_000)
+                .status(CrossShardTransferStatus.PENDING)
+                .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .build();
+        Long debitId = databaseShardRouter.write(shardOf(sourceId), () -> {
+            accountRepository.debitIfSufficient(sourceId, 2_000);
+            Transaction debit = transactionRepository.save(Transaction.builder()
+                    .fromAccountId(sourceId)
+                    .toAccountId(missingId)
+                    .amount(2_000)
+                    .type(TransactionType.TRANSFER)
+                    .build());
+            transfer.setSourceTransactionId(debit.getId());
+            crossShardTransferRepository.save(transfer);
+            return debit.getId();
+        });
+
+        crossShardTransferService.settle(transfer);
+        crossShardTransferService.settle(transfer);
+
+        List<Transaction> history = databaseShardRouter.read(shardOf(sourceId), () -> transactionRepository.findByAccountId(sourceId));
+        assertThat(history).extracting(Transaction::getId).contains(debitId);
+        assertThat(history)
+                .filteredOn(transaction -> transaction.getType() == TransactionType.DEPOSIT)
+                .singleElement()
+                .satisfies(refund -> {
+                    assertThat(refund.getToAccountId()).isEqualTo(sourceId);
+                    assertThat(refund.getAmount()).isEqualTo(2_000);
+                });
+    }
+
+    @Test
+    void rejectsTransferToMissingAccountBeforeDebiting() {
+        Long missingId = databaseShardRouter.firstId(shardOf(destinationId)) + 900_000;
+
+        assertThatThrownBy(() -> crossShardTransferService.transfer(sourceId, missingId, 1_000, "transfer"))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThat(balance(sourceId)).isEqualTo(10_000);
+    }
+
+    private Long createAccount() {
+        User user = userRepository.save(User.builder()
+                .username("shard-" + UUID.randomUUID())
+                .password("secret")
+                .build());
+        return accountService.createAccount(CreateAccountRequest.builder().userId(user.getId()).build()).getId();
+    }
+
+    private CrossShardTransfer findTransfer() {
+        return databaseShardRouter.read(shardOf(sourceId), () -> crossShardTransferRepository.findAll().stream()
+                .filter(transfer -> transfer.getFromAccountId().equals(sourceId))
+                .findFirst()
+                .orElseThrow());
+    }
+
+    private long balance(Long accountId) {
+        return databaseShardRouter.read(shardOf(accountId), () -> accountRepository.findById(accountId).orElseThrow().getBalance());
+    }
+
+    private int shardOf(Long accountId) {
+        return databaseShardRouter.shardOf(accountId);
+    }
+}
@@ -0,0 +1,156 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.dto.AccountResponse;
+import com.pratham.banking.entity.IdempotencyRecord;
+import com.pratham.banking.entity.IdempotencyStatus;
+import com.pratham.banking.entity.User;
+import com.pratham.banking.exception.IdempotencyConflictException;
+import com.pratham.banking.exception.IdempotencyInProgressException;
+import com.pratham.banking.repository.IdempotencyRepository;
+import com.pratham.banking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRepository idempotencyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void runsOperationOnceAndReplaysTheResponse() {
+        String key = newKey();
+        AtomicInteger runs = new AtomicInteger();
+
+        String first = idempotencyService.execute(key, "hash", () -> "response-" + runs.incrementAndGet());
+        String second = idempotencyService.execute(key, "hash", () -> "response-" + runs.incrementAndGet());
+
+        assertThat(first).isEqualTo("response-1");
+        assertThat(second).isEqualTo("response-1");
+        assertThat(runs).hasValue(1);
+        assertThat(idempotencyRepository.findById(key))
+                .get()
+                .extracting(IdempotencyRecord::getStatus)
+                .isEqualTo(IdempotencyStatus.COMPLETED);
+    }
+
+    @Test
+    void rejectsKeyReuseWithDifferentRequest() {
+        String key = newKey();
+        idempotencyService.execute(key, "hash", () -> "response");
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, "other-hash", () -> "other"))
+                .isInstanceOf(IdempotencyConflictException.class);
+    }
+
+    @Test
+    void releasesClaimWhenOperationFails() {
+        String key = newKey();
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, "hash", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(idempotencyRepository.findById(key)).isEmpty();
+
+        assertThat(idempotencyService.execute(key, "hash", () -> "retried")).isEqualTo("retried");
+    }
+
+    @Test
+    void discardsWritesWhenClaimWasTakenOverBeforeCompletion() {
+        String key = newKey();
+        String username = "fenced-" + key;
+        LocalDateTime takenOverAt = LocalDateTime.now().plusSeconds(1).truncatedTo(ChronoUnit.MICROS);
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, "hash", () -> {
+            userRepository.save(User.builder().username(username).password("secret").build());
+            // Another instance takes the claim over while this one is still working.
+            newTransaction().executeWithoutResult(status ->
+                    idempotencyRepository.takeOverStaleClaim(key, LocalDateTime.now().plusMinutes(1), takenOverAt));
+            return "response";
+        })).isInstanceOf(IdempotencyInProgressException.class);
+
+        assertThat(userRepository.findByUsername(username)).isEmpty();
+        IdempotencyRecord record = idempotencyRepository.findById(key).orElseThrow();
+        assertThat(record.isInProgress()).isTrue();
+        assertThat(record.getCreatedAt()).isEqualTo(takenOverAt);
+    }
+
+    @Test
+    void failsFastOnLiveClaimOfAnotherRequest() {
+        String key = newKey();
+        insertClaim(key, LocalDateTime.now());
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, "hash", () -> "response-" + runs.incrementAndGet()))
+                .isInstanceOf(IdempotencyInProgressException.class);
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void takesOverStaleClaim() {
+        String key = newKey();
+        insertClaim(key, LocalDateTime.now().minusHours(1));
+
+        assertThat(idempotencyService.execute(key, "hash", () -> "response")).isEqualTo("response");
+        assertThat(idempotencyRepository.findById(key))
+                .get()
+                .extracting(IdempotencyRecord::getStatus)
+                .isEqualTo(IdempotencyStatus.COMPLETED);
+    }
+
+    @Test
+    void findsResponseStoredUnderTheBareKeyForTheSameRequestOnly() {
+        String bareKey = UUID.randomUUID().toString();
+        AccountResponse stored = AccountResponse.builder().id(7L).userId(3L).balance(1_000).build();
+        idempotencyService.execute(bareKey, "hash", () -> stored);
+
+        assertThat(idempotencyService.findUnscopedResponse(bareKey, "hash", AccountResponse.class))
+                .usingRecursiveComparison()
+                .isEqualTo(stored);
+        assertThat(idempotencyService.findUnscopedResponse(bareKey, "other-hash", AccountResponse.class)).isNull();
+        assertThat(idempotencyService.findUnscopedResponse(newKey(), "hash", AccountResponse.class)).isNull();
+    }
+
+    private void insertClaim(String key, LocalDateTime claimedAt) {
+        idempotencyRepository.saveAndFlush(IdempotencyRecord.builder()
+                .key(key)
+                .requestHash("hash")
+                .responseBody("")
+                .status(IdempotencyStatus.IN_PROGRESS)
+                .createdAt(claimedAt.truncatedTo(ChronoUnit.MICROS))
+                .build());
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private static String newKey() {
+        return "test:" + UUID.randomUUID();
+    }
+}
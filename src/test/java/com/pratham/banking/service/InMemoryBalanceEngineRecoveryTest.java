@@ -0,0 +1,173 @@
+package com.pratham.banking.service;
+
+import com.pratham.banking.entity.Account;
+import com.pratham.banking.entity.LedgerCheckpoint;
+import com.pratham.banking.entity.Transaction;
+import com.pratham.banking.entity.TransactionType;
+import com.pratham.banking.entity.User;
+import com.pratham.banking.repository.AccountRepository;
+import com.pratham.banking.repository.LedgerCheckpointRepository;
+import com.pratham.banking.repository.TransactionRepository;
+import com.pratham.banking.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Restarts engines on a ledger left by an earlier run, written here directly as a crash would leave it.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class InMemoryBalanceEngineRecoveryTest {
+
+    private static final long MISSING_ACCOUNT_ID = 999_999_999L;
+
+    @TempDir
+    Path journalDirectory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private LedgerCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<InMemoryBalanceEngine> engines = new ArrayList<>();
+    private Long sourceId;
+    private Long destinationId;
+
+    @BeforeEach
+    void setUp() {
+        checkpointRepository.deleteAll();
+        User user = userRepository.save(User.builder()
+                .username("engine-" + UUID.randomUUID())
+                .password("secret")
+                .build());
+        sourceId = accountRepository.save(Account.builder().user(user).balance(10_000).build()).getId();
+        destinationId = accountRepository.save(Account.builder().user(user).balance(5_000).build()).getId();
+    }
+
+    @AfterEach
+    void stopEngines() throws InterruptedException {
+        for (InMemoryBalanceEngine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    @Test
+    void replaysRecordsPastTheCheckpointIntoTheDatabase() throws IOException {
+        writeLedger(journal -> {
+            journal.append(LedgerRecord.Type.DEPOSIT, 0, 0, sourceId, 1_000, 0, 11_000);
+            journal.append(LedgerRecord.Type.TRANSFER, 0, sourceId, destinationId, 2_000, 9_000, 7_000);
+        });
+
+        InMemoryBalanceEngine engine = startEngine();
+
+        assertThat(balance(sourceId)).isEqualTo(9_000);
+        assertThat(balance(destinationId)).isEqualTo(7_000);
+        assertThat(transactionRepository.findByAccountId(sourceId)).extracting(Transaction::getType)
+                .containsExactlyInAnyOrder(TransactionType.DEPOSIT, TransactionType.TRANSFER);
+        assertThat(checkpointRepository.findById("database")).get()
+                .extracting(LedgerCheckpoint::getPosition)
+                .isEqualTo(2L);
+        assertThat(engine.getAccount(sourceId).balance()).isEqualTo(9_000);
+    }
+
+    @Test
+    void creditsInterruptedCrossLaneTransferOnce() throws Exception {
+        writeLedger(journal ->
+                journal.append(LedgerRecord.Type.TRANSFER_OUT, 0, sourceId, destinationId, 3_000, 7_000, 0));
+
+        startEngine().stop();
+        assertThat(balance(sourceId)).isEqualTo(7_000);
+        assertThat(balance(destinationId)).isEqualTo(8_000);
+
+        startEngine();
+        assertThat(balance(sourceId)).isEqualTo(7_000);
+        assertThat(balance(destinationId)).isEqualTo(8_000);
+        assertThat(transactionRepository.findByAccountId(destinationId))
+                .singleElement()
+                .satisfies(transaction -> {
+                    assertThat(transaction.getType()).isEqualTo(TransactionType.TRANSFER);
+                    assertThat(transaction.getFromAccountId()).isEqualTo(sourceId);
+                    assertThat(transaction.getAmount()).isEqualTo(3_000);
+                });
+    }
+
+    @Test
+    void refundsInterruptedTransferToMissingAccount() throws IOException {
+        writeLedger(journal ->
+                journal.append(LedgerRecord.Type.TRANSFER_OUT, 0, sourceId, MISSING_ACCOUNT_ID, 3_000, 7_000, 0));
+
+        startEngine();
+
+        assertThat(balance(sourceId)).isEqualTo(10_000);
+        assertThat(transactionRepository.findByAccountId(sourceId)).isEmpty();
+    }
+
+    @Test
+    void refusesLedgerThatDoesNotReachTheDatabaseCheckpoint() throws IOException {
+        writeLedger(journal -> journal.append(LedgerRecord.Type.DEPOSIT, 0, 0, sourceId, 1_000, 0, 11_000));
+        checkpointRepository.save(LedgerCheckpoint.builder().consumer("database").position(50L).build());
+
+        assertThatThrownBy(() -> newEngine().start())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("database is at record 50");
+        assertThat(balance(sourceId)).isEqualTo(10_000);
+    }
+
+    private void writeLedger(LedgerWriter writer) throws IOException {
+        try (LedgerJournal journal = new LedgerJournal(journalDirectory, 1024 * 1024, false, 0, 0)) {
+            writer.write(journal);
+            journal.whenDurable(journal.nextId() - 1).join();
+        }
+    }
+
+    private InMemoryBalanceEngine startEngine() throws IOException {
+        InMemoryBalanceEngine engine = newEngine();
+        engine.start();
+        engines.add(engine);
+        return engine;
+    }
+
+    private InMemoryBalanceEngine newEngine() {
+        return new InMemoryBalanceEngine(jdbcTemplate, transactionRepository, checkpointRepository, transactionManager,
+                TransferEngine.IN_MEMORY, false, false, 2, 1_000, 64, journalDirectory.toString(), false, 1, 0, 100,
+                5_000, 24);
+    }
+
+    private long balance(Long accountId) {
+        return accountRepository.findById(accountId).orElseThrow().getBalance();
+    }
+
+    @FunctionalInterface
+    private interface LedgerWriter {
+        void write(LedgerJournal journal) throws IOException;
+    }
+}
@@ -0,0 +1,105 @@
+package com.pratham.banking.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LedgerJournalTest {
+
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackDurableRecordsAfterReopening() throws IOException {
+        try (LedgerJournal journal = open()) {
+            appendDeposits(journal, 3);
+        }
+
+        try (LedgerJournal journal = open()) {
+            assertThat(journal.nextId()).isEqualTo(3);
+            List<LedgerRecord> records = journal.read(0, 10);
+            assertThat(records).extracting(LedgerRecord::id).containsExactly(0L, 1L, 2L);
+            assertThat(records).extracting(LedgerRecord::toBalance).containsExactly(100L, 200L, 300L);
+        }
+    }
+
+    @Test
+    void cutsOffTornRecordAtTheTail() throws IOException {
+        try (LedgerJournal journal = open()) {
+            appendDeposits(journal, 3);
+        }
+        corrupt(segment(0), 2);
+
+        try (LedgerJournal journal = open()) {
+            assertThat(journal.nextId()).isEqualTo(2);
+            assertThat(journal.read(0, 10)).extracting(LedgerRecord::id).containsExactly(0L, 1L);
+
+            LedgerRecord appended = journal.append(LedgerRecord.Type.WITHDRAW, 0, 1, 0, 50, 150, 0);
+            assertThat(appended.id()).isEqualTo(2);
+            journal.whenDurable(appended.id()).join();
+            assertThat(journal.read(2, 10)).containsExactly(appended);
+        }
+
+        try (LedgerJournal journal = open()) {
+            assertThat(journal.nextId()).isEqualTo(3);
+            assertThat(journal.read(2, 1).get(0).type()).isEqualTo(LedgerRecord.Type.WITHDRAW);
+        }
+    }
+
+    @Test
+    void dropsSegmentsWrittenAfterTheTornRecord() throws IOException {
+        try (LedgerJournal journal = open()) {
+            appendDeposits(journal, RECORDS_PER_SEGMENT + 2);
+        }
+        assertThat(segmentFiles()).hasSize(2);
+        corrupt(segment(0), 1);
+
+        try (LedgerJournal journal = open()) {
+            assertThat(journal.nextId()).isEqualTo(1);
+            assertThat(journal.read(0, 10)).extracting(LedgerRecord::id).containsExactly(0L);
+        }
+        assertThat(segmentFiles()).containsExactly(segment(0));
+    }
+
+    private LedgerJournal open() throws IOException {
+        return new LedgerJournal(directory, (long) RECORDS_PER_SEGMENT * LedgerRecord.SIZE, false, 0, 0);
+    }
+
+    private static void appendDeposits(LedgerJournal journal, int count) throws IOException {
+        LedgerRecord last = null;
+        for (int index = 1; index <= count; index++) {
+            last = journal.append(LedgerRecord.Type.DEPOSIT, 0, 0, 1, 100, 0, 100L * index);
+        }
+        journal.whenDurable(last.id()).join();
+    }
+
+    private Path segment(long firstId) {
+        return directory.resolve(String.format("ledger-%020d.segment", firstId));
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    /**
+     * Overwrites part of a record, as a crash in the middle of writing it would.
+     */
+    private static void corrupt(Path segment, int recordIndex) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek((long) recordIndex * LedgerRecord.SIZE + 16);
+            file.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        }
+    }
+}